@@ -0,0 +1,65 @@
+package fr.devlogic.encrypt.spring.impl;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.lang.reflect.Method;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+
+/**
+ * Scan of the static {@code BiConsumer} fields of a configuration class, cached and uncached.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class AsmLambdaFieldBenchmark {
+
+    @Benchmark
+    public Map<String, List<Method>> retrieveLambdaStaticFields() {
+        return AsmLambdaField.retrieveLambdaStaticFields(LambdaFields.class);
+    }
+
+    @Benchmark
+    public Map<String, List<Method>> scan() {
+        return AsmLambdaField.scan(LambdaFields.class);
+    }
+
+    public static class Target {
+        private String user;
+        private String password;
+        private String token;
+
+        public void setUser(String user) {
+            this.user = user;
+        }
+
+        public void setPassword(String password) {
+            this.password = password;
+        }
+
+        public void setToken(String token) {
+            this.token = token;
+        }
+    }
+
+    @SuppressWarnings("unused")
+    static class LambdaFields {
+        private static final BiConsumer<Target, String> USER = Target::setUser;
+        private static final BiConsumer<Target, String> PASSWORD = Target::setPassword;
+        private static final BiConsumer<Target, String> TOKEN = Target::setToken;
+        private static final String NAME = "lambda-fields";
+
+        static int compute(int value) {
+            int result = 0;
+            for (int i = 0; i < value; i++) {
+                result += i * value;
+            }
+            return result;
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package fr.devlogic.encrypt.spring.impl;
+
+import fr.devlogic.encrypt.spring.EncryptedProperty;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.mock.env.MockEnvironment;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Post-processing of synthetic beans: a bean which is not a configuration, a configuration without encrypted
+ * property, and a configuration with four encrypted properties, decrypted with or without the cache.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class EncryptedPropertyBeanProcessorBenchmark {
+
+    private static final String ALGO = "AES";
+    private static final String KEY = "4QJ9YpTDKkrEEaJcbhn6DU6SgaSW+cNWC66CW6unmPc=";
+    private static final String ENCRYPTED_VALUE = "cXRmmH67QY9DxbHrlSrDhw==";
+
+    @Param({"false", "true"})
+    public boolean cache;
+
+    private EncryptedPropertyBeanProcessor processor;
+    private final PlainBean plainBean = new PlainBean();
+    private final PlainConfiguration plainConfiguration = new PlainConfiguration();
+    private final EncryptedConfiguration encryptedConfiguration = new EncryptedConfiguration();
+
+    @Setup
+    public void setUp() {
+        processor = new EncryptedPropertyBeanProcessor(new MockEnvironment());
+        if (cache) {
+            processor.setDecryptionCache(new DecryptionCache(256, false));
+        }
+    }
+
+    @Benchmark
+    public Object plainBean() {
+        return processor.postProcessAfterInitialization(plainBean, "plainBean");
+    }
+
+    @Benchmark
+    public Object plainConfiguration() {
+        return processor.postProcessAfterInitialization(plainConfiguration, "plainConfiguration");
+    }
+
+    @Benchmark
+    public Object encryptedConfiguration() {
+        encryptedConfiguration.reset();
+        return processor.postProcessAfterInitialization(encryptedConfiguration, "encryptedConfiguration");
+    }
+
+    public static class PlainBean {
+        private String name = "plain";
+
+        public String getName() {
+            return name;
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+    }
+
+    @Configuration
+    public static class PlainConfiguration {
+        private String url = "jdbc:h2:mem:benchmark";
+        private String user = "benchmark";
+
+        public String getUrl() {
+            return url;
+        }
+
+        public void setUrl(String url) {
+            this.url = url;
+        }
+
+        public String getUser() {
+            return user;
+        }
+
+        public void setUser(String user) {
+            this.user = user;
+        }
+    }
+
+    @ConfigurationProperties("benchmark")
+    @EncryptedProperty(algo = ALGO, key = KEY)
+    public static class EncryptedConfiguration {
+        private String password;
+        private String token;
+        private String secret;
+        private String apiKey;
+
+        void reset() {
+            password = ENCRYPTED_VALUE;
+            token = ENCRYPTED_VALUE;
+            secret = ENCRYPTED_VALUE;
+            apiKey = ENCRYPTED_VALUE;
+        }
+
+        public String getPassword() {
+            return password;
+        }
+
+        @EncryptedProperty
+        public void setPassword(String password) {
+            this.password = password;
+        }
+
+        public String getToken() {
+            return token;
+        }
+
+        @EncryptedProperty
+        public void setToken(String token) {
+            this.token = token;
+        }
+
+        public String getSecret() {
+            return secret;
+        }
+
+        @EncryptedProperty
+        public void setSecret(String secret) {
+            this.secret = secret;
+        }
+
+        public String getApiKey() {
+            return apiKey;
+        }
+
+        @EncryptedProperty
+        public void setApiKey(String apiKey) {
+            this.apiKey = apiKey;
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package fr.devlogic.encrypt.util;
+
+import org.openjdk.jmh.annotations.*;
+
+import javax.crypto.SecretKey;
+import javax.crypto.spec.SecretKeySpec;
+import java.security.GeneralSecurityException;
+import java.util.Base64;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encryption and decryption of a property value, per algorithm and key size. The decryption is measured into a
+ * {@link String}, with a ready-to-use key, and into caller buffers (run with {@code -prof gc} to compare the
+ * allocations, which must not grow with the value length for the caller buffers).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class EncryptBenchmark {
+
+    /**
+     * algorithm/key size in bits
+     */
+    @Param({"AES/128", "AES/256", "DESede/192", "Blowfish/128"})
+    public String algoAndKeySize;
+
+    @Param({"16", "256", "8192"})
+    public int valueLength;
+
+    private String algo;
+    private String key;
+    private SecretKey secretKey;
+    private final byte[] bytes = new byte[16 * 1024];
+    private final char[] chars = new char[16 * 1024];
+    private String value;
+    private String encryptedValue;
+
+    @Setup
+    public void setUp() throws GeneralSecurityException {
+        String[] parts = algoAndKeySize.split("/");
+        algo = parts[0];
+        byte[] keyBytes = Encrypt.genKey(Integer.parseInt(parts[1]));
+        key = Base64.getEncoder().encodeToString(keyBytes);
+        secretKey = new SecretKeySpec(keyBytes, algo);
+
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < valueLength; i++) {
+            builder.append((char) ('a' + i % 26));
+        }
+        value = builder.toString();
+        encryptedValue = Encrypt.encrypt(value, algo, key);
+    }
+
+    @Benchmark
+    public String encrypt() throws GeneralSecurityException {
+        return Encrypt.encrypt(value, algo, key);
+    }
+
+    @Benchmark
+    public String decrypt() throws GeneralSecurityException {
+        return Encrypt.decrypt(encryptedValue, algo, key);
+    }
+
+    @Benchmark
+    public String decryptSecretKey() throws GeneralSecurityException {
+        return Encrypt.decrypt(encryptedValue, algo, secretKey);
+    }
+
+    @Benchmark
+    public int decryptBytes() throws GeneralSecurityException {
+        return Encrypt.decrypt(encryptedValue, bytes, 0, algo, secretKey);
+    }
+
+    @Benchmark
+    public int decryptChars() throws GeneralSecurityException {
+        return Encrypt.decrypt(encryptedValue, chars, algo, secretKey);
+    }
+}
@@ -0,0 +1,77 @@
+package fr.devlogic.encrypt.util;
+
+import org.openjdk.jmh.annotations.*;
+
+import javax.crypto.Cipher;
+import java.io.*;
+import java.security.GeneralSecurityException;
+import java.util.Base64;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of the cipher streams, with reads and writes of several buffer sizes.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class EncryptStreamBenchmark {
+
+    private static final int DATA_SIZE = 1024 * 1024;
+
+    @Param({"1", "512", "8192", "65536"})
+    public int bufferSize;
+
+    private byte[] key;
+    private byte[] data;
+    private byte[] encryptedData;
+    private byte[] buffer;
+
+    @Setup
+    public void setUp() throws GeneralSecurityException {
+        key = Encrypt.genKey(256);
+        data = new byte[DATA_SIZE];
+        new Random(0).nextBytes(data);
+        encryptedData = Encrypt.cipher(data, Cipher.ENCRYPT_MODE, "AES", Base64.getEncoder().encodeToString(key));
+        buffer = new byte[bufferSize];
+    }
+
+    @Benchmark
+    public long decryptInputStream() throws GeneralSecurityException, IOException {
+        long total = 0;
+        try (InputStream is = Encrypt.cipher(new ByteArrayInputStream(encryptedData), Cipher.DECRYPT_MODE, "AES", key)) {
+            if (bufferSize == 1) {
+                for (int b = is.read(); b >= 0; b = is.read()) {
+                    total++;
+                }
+            } else {
+                for (int length = is.read(buffer); length >= 0; length = is.read(buffer)) {
+                    total += length;
+                }
+            }
+        }
+
+        return total;
+    }
+
+    @Benchmark
+    public int encryptOutputStream() throws GeneralSecurityException, IOException {
+        ByteArrayOutputStream encrypted = new ByteArrayOutputStream(DATA_SIZE + 16);
+        try (OutputStream os = Encrypt.cipher(encrypted, Cipher.ENCRYPT_MODE, "AES", key)) {
+            if (bufferSize == 1) {
+                for (byte b : data) {
+                    os.write(b);
+                }
+            } else {
+                for (int offset = 0; offset < data.length; offset += bufferSize) {
+                    os.write(data, offset, Math.min(bufferSize, data.length - offset));
+                }
+            }
+        }
+
+        return encrypted.size();
+    }
+}
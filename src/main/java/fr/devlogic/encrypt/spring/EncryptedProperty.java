@@ -18,6 +18,9 @@ import java.lang.annotation.Target;
  *  }
  * </pre>
  * <p>
+ * The key can also be referenced by its alias in a keystore, {@code @EncryptedProperty(algo = "AES", keyRef = "db")},
+ * see {@link EncryptionKeyRegistry}.
+ * <p>
  * Annotation attributes can be factorized by annotating the configuration class and not specifying the attributes
  * on setters (if not to override them).
  * <p>
@@ -59,13 +62,37 @@ public @interface EncryptedProperty {
      */
     String key() default "";
 
+    /**
+     * Alias of the cipher key in the {@link EncryptionKeyRegistry}, used in place of {@link #key()}. The key is then
+     * neither in the code nor in the class files.
+     *
+     * @return
+     * Alias of the key (e.g. "db-password")
+     */
+    String keyRef() default "";
+
     /**
      * List of accepted or rejected spring profiles
      *
      * A profile prefixed with "!" is rejected. By default, all profiles are affected.
+     * A profile expression, with the {@link org.springframework.core.env.Profiles#of(String...)} syntax, is also
+     * accepted when the attribute contains "&amp;", "|" or parentheses, for example "(prod | pre-prod) &amp; !test".
      *
      * @return
-     * Profiles List, separated by commas (with or without spaces), for example "prod, !test".
+     * Profiles List, separated by commas (with or without spaces), for example "prod, !test", or profile expression.
      */
     String profiles() default "";
+
+    /**
+     * Decryption on first access. The bean is wrapped in a class based proxy, the property keeps its encrypted value
+     * until its getter is called through the proxy, then it is decrypted once. The properties of a final class, or of
+     * a class with a non private final method, are decrypted at once: such a method would run on the proxy itself.
+     * <p>
+     * A property is lazy when this attribute is true on the setter or on the class, or when the
+     * {@code encrypted-property.lazy} property is true and the class is not a {@code @Configuration} class.
+     *
+     * @return
+     * true to decrypt the property on first access
+     */
+    boolean lazy() default false;
 }
@@ -0,0 +1,24 @@
+package fr.devlogic.encrypt.spring;
+
+import org.springframework.lang.Nullable;
+
+import javax.crypto.SecretKey;
+
+/**
+ * Registry of the cipher keys referenced by {@link EncryptedProperty#keyRef()}.
+ * <p>
+ * The keys are loaded once, the registry returns ready-to-use {@link SecretKey} objects. A bean implementing this
+ * interface replaces the keystore registry of the library, enabled by the {@code encrypted-property.keystore.location}
+ * property.
+ */
+@FunctionalInterface
+public interface EncryptionKeyRegistry {
+    /**
+     * @param alias
+     * Alias of the key
+     * @return
+     * The key, null when the alias is unknown
+     */
+    @Nullable
+    SecretKey getKey(String alias);
+}
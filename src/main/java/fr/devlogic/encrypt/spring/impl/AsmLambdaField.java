@@ -8,6 +8,14 @@ import java.io.InputStream;
 import java.lang.reflect.Method;
 import java.util.*;
 
+/**
+ * Lambdas assigned to the static fields of a class, read from the bytecode of its static initializer.
+ * <p>
+ * Only {@code <clinit>} is visited, without the debug information and the frames. The targets of the lambdas are
+ * resolved once the scan is done, only for the lambdas assigned to a field, with the class loader of the scanned class
+ * and without initializing the target classes. The result is attached to the class with a {@link ClassValue}: a class
+ * is scanned once per JVM, whatever the number of contexts, and the result is released with its class loader.
+ */
 final class AsmLambdaField {
 
     private static final String LAMBDA_META_FACTORY_CLASS = "java/lang/invoke/LambdaMetafactory";
@@ -15,22 +23,41 @@ final class AsmLambdaField {
     private static final String TARGET_TYPE = "(Ljava/lang/String;)V";
     private static final String CLASS_INIT = "<clinit>";
 
+    private static final ClassValue<Map<String, List<Method>>> cache = new ClassValue<Map<String, List<Method>>>() {
+        @Override
+        protected Map<String, List<Method>> computeValue(Class<?> c) {
+            return scan(c);
+        }
+    };
+
     private AsmLambdaField() {
     }
 
-    public static Map<String, List<Method>> retrieveLambdaStaticFields(Class<?>c) {
-        List<Method> methods = new ArrayList<>();
-        Map<String, List<Method>> fieldLambdas = new HashMap<>();
+    /**
+     * @param c
+     * Scanned class
+     * @return
+     * Unmodifiable map of the static field names to the setters referenced by their lambdas
+     */
+    public static Map<String, List<Method>> retrieveLambdaStaticFields(Class<?> c) {
+        return cache.get(c);
+    }
 
-        String classFile = "/" + c.getName().replace(".", "/") + ".class";
+    /**
+     * Scan without cache.
+     */
+    static Map<String, List<Method>> scan(Class<?> c) {
+        FlightRecorderEvents.Event event = FlightRecorderEvents.get().lambdaScan(c);
+        List<Handle> handles = new ArrayList<>();
+        Map<String, List<Handle>> fieldHandles = new HashMap<>();
 
-        InputStream is = AsmLambdaField.class.getResourceAsStream(classFile);
-        if (is == null) {
-            throw new IllegalStateException("Cannot load " + c.getName());
-        }
+        String classFile = "/" + c.getName().replace('.', '/') + ".class";
 
         ClassReader classReader;
-        try {
+        try (InputStream is = c.getResourceAsStream(classFile)) {
+            if (is == null) {
+                throw new IllegalStateException("Cannot load " + c.getName());
+            }
             classReader = new ClassReader(is);
         } catch (IOException ex) {
             throw new EncryptException(ex);
@@ -39,59 +66,64 @@ final class AsmLambdaField {
         classReader.accept(new ClassVisitor(Opcodes.ASM8) {
             @Override
             public MethodVisitor visitMethod(int access, String name, String descriptor, String signature, String[] exceptions) {
-                if (CLASS_INIT.equals(name)) {
-                    return new MethodVisitor(Opcodes.ASM8) {
+                if (!CLASS_INIT.equals(name)) {
+                    return null;
+                }
 
+                return new MethodVisitor(Opcodes.ASM8) {
+                    @Override
+                    public void visitFieldInsn(int opcode, String owner, String name, String descriptor) {
+                        if ((Opcodes.PUTSTATIC == opcode) && !handles.isEmpty()) {
+                            fieldHandles.put(name, new ArrayList<>(handles));
+                        }
 
-                        @Override
-                        public void visitFieldInsn(int opcode, String owner, String name, String descriptor) {
-                            if ((Opcodes.PUTSTATIC == opcode) && !methods.isEmpty()) {
-                                fieldLambdas.put(name, new ArrayList<>(methods));
-                            }
+                        handles.clear();
+                    }
 
-                            methods.clear();
-                            super.visitFieldInsn(opcode, owner, name, descriptor);
-                        }
+                    @Override
+                    public void visitInvokeDynamicInsn(String name, String descriptor, Handle bootstrapMethodHandle, Object... bootstrapMethodArguments) {
+                        String handleClass = bootstrapMethodHandle.getOwner();
+                        String handleMethod = bootstrapMethodHandle.getName();
 
-                        @Override
-                        public void visitInvokeDynamicInsn(String name, String descriptor, Handle bootstrapMethodHandle, Object... bootstrapMethodArguments) {
-
-                            String handleClass = bootstrapMethodHandle.getOwner();
-                            String handleMethod = bootstrapMethodHandle.getName();
-
-                            if (LAMBDA_META_FACTORY_CLASS.equals(handleClass) && LAMBDA_META_FACTORY_METHOD.equals(handleMethod)
-                                   && (bootstrapMethodArguments.length == 3) && (bootstrapMethodArguments[1] instanceof Handle)) {
-                                Handle handle = (Handle) bootstrapMethodArguments[1];
-                                String targetType = handle.getDesc();
-
-                                if (TARGET_TYPE.equals(targetType)) {
-                                    String targetClassName = handle.getOwner();
-                                    String targetMethod = handle.getName();
-                                    try {
-                                        Class<?> targetClass = Class.forName(targetClassName.replace('/', '.'));
-                                        Method method = targetClass.getMethod(targetMethod, String.class);
-                                        methods.add(method);
-                                    } catch (ClassNotFoundException | NoSuchMethodException ex) {
-                                        throw new EncryptException(ex);
-                                    }
-                                }
+                        if (LAMBDA_META_FACTORY_CLASS.equals(handleClass) && LAMBDA_META_FACTORY_METHOD.equals(handleMethod)
+                                && (bootstrapMethodArguments.length == 3) && (bootstrapMethodArguments[1] instanceof Handle)) {
+                            Handle handle = (Handle) bootstrapMethodArguments[1];
+                            if (TARGET_TYPE.equals(handle.getDesc())) {
+                                handles.add(handle);
                             }
-
-                            super.visitInvokeDynamicInsn(name, descriptor, bootstrapMethodHandle, bootstrapMethodArguments);
                         }
+                    }
+                };
+            }
+        }, ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES);
 
-                    };
-                }
-                return super.visitMethod(access, name, descriptor, signature, exceptions);
-           }
-        }, 0);
-
-        try {
-            is.close();
-        } catch (IOException ex) {
-            throw new EncryptException(ex);
-        }
+        Map<String, List<Method>> fieldLambdas = resolve(c.getClassLoader(), fieldHandles);
 
+        event.commit(fieldLambdas.size());
         return fieldLambdas;
     }
+
+    private static Map<String, List<Method>> resolve(ClassLoader classLoader, Map<String, List<Handle>> fieldHandles) {
+        Map<String, Class<?>> targetClasses = new HashMap<>();
+        Map<String, List<Method>> fieldLambdas = new HashMap<>();
+
+        fieldHandles.forEach((fieldName, handles) -> {
+            List<Method> methods = new ArrayList<>(handles.size());
+            for (Handle handle : handles) {
+                try {
+                    Class<?> targetClass = targetClasses.get(handle.getOwner());
+                    if (targetClass == null) {
+                        targetClass = Class.forName(handle.getOwner().replace('/', '.'), false, classLoader);
+                        targetClasses.put(handle.getOwner(), targetClass);
+                    }
+                    methods.add(targetClass.getMethod(handle.getName(), String.class));
+                } catch (ClassNotFoundException | NoSuchMethodException ex) {
+                    throw new EncryptException(ex);
+                }
+            }
+            fieldLambdas.put(fieldName, Collections.unmodifiableList(methods));
+        });
+
+        return Collections.unmodifiableMap(fieldLambdas);
+    }
 }
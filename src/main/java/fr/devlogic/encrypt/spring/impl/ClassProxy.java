@@ -0,0 +1,74 @@
+package fr.devlogic.encrypt.spring.impl;
+
+import org.aopalliance.intercept.MethodInterceptor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.aop.framework.AopConfigException;
+import org.springframework.aop.framework.ProxyFactory;
+import org.springframework.aop.support.AopUtils;
+import org.springframework.lang.Nullable;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+
+/**
+ * Class based proxy of a bean. The proxy instance is created by Objenesis, without calling a constructor: its own
+ * fields stay null. A final method is not intercepted and runs on the proxy instance, so a class declaring a non
+ * private final instance method, itself or one of its super classes, is not proxied.
+ */
+final class ClassProxy {
+
+    private static final Logger log = LoggerFactory.getLogger(ClassProxy.class);
+
+    private ClassProxy() {
+    }
+
+    /**
+     * @param beanClass
+     * Bean class, the proxy extends it
+     * @return
+     * true when all the methods of the class that can be called from outside are intercepted by the proxy
+     */
+    static boolean isSupported(Class<?> beanClass) {
+        if (Modifier.isFinal(beanClass.getModifiers())) {
+            return false;
+        }
+
+        for (Class<?> c = beanClass; c != null && c != Object.class; c = c.getSuperclass()) {
+            for (Method method : c.getDeclaredMethods()) {
+                int modifiers = method.getModifiers();
+                if (Modifier.isFinal(modifiers) && !Modifier.isPrivate(modifiers) && !Modifier.isStatic(modifiers)) {
+                    return false;
+                }
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * @param bean
+     * Bean instance, target of the proxy
+     * @param interceptor
+     * Interceptor of all the calls
+     * @return
+     * The proxy, or null when the bean cannot be proxied
+     */
+    @Nullable
+    static Object proxy(Object bean, MethodInterceptor interceptor) {
+        if (AopUtils.isAopProxy(bean) || !isSupported(bean.getClass())) {
+            log.debug("{} is not proxied", bean.getClass().getName());
+            return null;
+        }
+
+        ProxyFactory proxyFactory = new ProxyFactory(bean);
+        proxyFactory.setProxyTargetClass(true);
+        proxyFactory.addAdvice(interceptor);
+        try {
+            return proxyFactory.getProxy(bean.getClass().getClassLoader());
+        } catch (AopConfigException ex) {
+            log.debug("Cannot proxy {}. Reason: {}", bean.getClass().getName(), ex.toString());
+            return null;
+        }
+    }
+}
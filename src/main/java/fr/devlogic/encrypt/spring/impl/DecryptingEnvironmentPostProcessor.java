@@ -0,0 +1,45 @@
+package fr.devlogic.encrypt.spring.impl;
+
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.context.properties.source.ConfigurationPropertySources;
+import org.springframework.boot.env.EnvironmentPostProcessor;
+import org.springframework.core.Ordered;
+import org.springframework.core.env.ConfigurableEnvironment;
+import org.springframework.core.env.MutablePropertySources;
+import org.springframework.util.StringUtils;
+
+/**
+ * Adds a {@link DecryptingPropertySource} before the other property sources, so that the {@code ENC(...)} values
+ * are decrypted for {@code @Value}, {@code Environment.getProperty} and the binder.
+ * <p>
+ * Enabled when the {@code encrypted-property.algo} and {@code encrypted-property.key} properties are defined. It
+ * runs after the configuration files are loaded.
+ */
+public class DecryptingEnvironmentPostProcessor implements EnvironmentPostProcessor, Ordered {
+
+    static final String ALGO_PROPERTY = "encrypted-property.algo";
+    static final String KEY_PROPERTY = "encrypted-property.key";
+
+    @Override
+    public void postProcessEnvironment(ConfigurableEnvironment environment, SpringApplication application) {
+        String algo = environment.getProperty(ALGO_PROPERTY);
+        String key = environment.getProperty(KEY_PROPERTY);
+        if (!StringUtils.hasLength(algo) || !StringUtils.hasLength(key)) {
+            return;
+        }
+
+        MutablePropertySources propertySources = environment.getPropertySources();
+        propertySources.remove(DecryptingPropertySource.NAME);
+
+        DecryptingPropertySource decryptingPropertySource = new DecryptingPropertySource(propertySources, algo, key);
+        if (!decryptingPropertySource.isEmpty()) {
+            propertySources.addFirst(decryptingPropertySource);
+            ConfigurationPropertySources.attach(environment); // keeps the attached source first
+        }
+    }
+
+    @Override
+    public int getOrder() {
+        return Ordered.LOWEST_PRECEDENCE;
+    }
+}
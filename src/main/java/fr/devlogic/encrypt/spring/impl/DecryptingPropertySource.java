@@ -0,0 +1,155 @@
+package fr.devlogic.encrypt.spring.impl;
+
+import fr.devlogic.encrypt.util.Encrypt;
+import fr.devlogic.encrypt.util.EncryptException;
+import org.springframework.boot.context.properties.source.ConfigurationPropertySources;
+import org.springframework.core.env.EnumerablePropertySource;
+import org.springframework.core.env.MutablePropertySources;
+import org.springframework.core.env.PropertySource;
+import org.springframework.core.env.SystemEnvironmentPropertySource;
+
+import java.security.GeneralSecurityException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Property source, placed before the other sources, exposing the decrypted value of the properties written
+ * {@code ENC(base64 data)}.
+ * <p>
+ * The encrypted properties are listed once, when the source is created: the property sources added later are not
+ * decrypted. The other properties are not served by this source, their lookup goes on with the next sources. A value
+ * is decrypted on its first lookup, then memoized per property name, as long as the encrypted value does not change.
+ * <p>
+ * The original property sources are left untouched. An encrypted environment variable is also exposed under its
+ * lower case, dotted name ({@code DB_PASSWORD} as {@code db.password}).
+ */
+final class DecryptingPropertySource extends EnumerablePropertySource<MutablePropertySources> {
+
+    static final String NAME = "decryptedProperties";
+    static final String PREFIX = "ENC(";
+    static final String SUFFIX = ")";
+
+    private final String algo;
+    private final String key;
+    // exposed name -> name in the original sources
+    private final Map<String, String> encryptedNames;
+    private final String[] propertyNames;
+    private final Map<String, DecryptedValue> decryptedValues = new ConcurrentHashMap<>();
+
+    DecryptingPropertySource(MutablePropertySources propertySources, String algo, String key) {
+        super(NAME, propertySources);
+        this.algo = algo;
+        this.key = key;
+        this.encryptedNames = findEncryptedNames(propertySources);
+        this.propertyNames = encryptedNames.keySet().toArray(new String[0]);
+    }
+
+    boolean isEmpty() {
+        return encryptedNames.isEmpty();
+    }
+
+    @Override
+    public String[] getPropertyNames() {
+        return propertyNames.clone();
+    }
+
+    @Override
+    public boolean containsProperty(String name) {
+        return encryptedNames.containsKey(name);
+    }
+
+    @Override
+    public Object getProperty(String name) {
+        String sourceName = encryptedNames.get(name);
+        if (sourceName == null) {
+            return null;
+        }
+
+        Object value = lookup(sourceName);
+        if (!(value instanceof String) || !isEncrypted((String) value)) {
+            return null; // no longer encrypted, the next sources serve the value
+        }
+
+        String encryptedValue = (String) value;
+        DecryptedValue decryptedValue = decryptedValues.get(name);
+        if (decryptedValue == null || !decryptedValue.encryptedValue.equals(encryptedValue)) {
+            decryptedValue = new DecryptedValue(encryptedValue, decrypt(sourceName, encryptedValue));
+            decryptedValues.put(name, decryptedValue);
+        }
+
+        return decryptedValue.value;
+    }
+
+    static boolean isEncrypted(String value) {
+        return value.startsWith(PREFIX) && value.endsWith(SUFFIX);
+    }
+
+    private Object lookup(String name) {
+        for (PropertySource<?> propertySource : source) {
+            if (isDelegate(propertySource) && propertySource.containsProperty(name)) {
+                return propertySource.getProperty(name);
+            }
+        }
+
+        return null;
+    }
+
+    private boolean isDelegate(PropertySource<?> propertySource) {
+        return (propertySource != this) && !NAME.equals(propertySource.getName())
+                && !ConfigurationPropertySources.isAttachedConfigurationPropertySource(propertySource);
+    }
+
+    private Map<String, String> findEncryptedNames(MutablePropertySources propertySources) {
+        Set<String> shadowedNames = new HashSet<>();
+        Map<String, String> names = new LinkedHashMap<>();
+
+        for (PropertySource<?> propertySource : propertySources) {
+            if (!isDelegate(propertySource) || !(propertySource instanceof EnumerablePropertySource)) {
+                continue;
+            }
+
+            for (String name : ((EnumerablePropertySource<?>) propertySource).getPropertyNames()) {
+                if (!shadowedNames.add(name)) {
+                    continue; // a source with a higher precedence defines the property
+                }
+
+                Object value = propertySource.getProperty(name);
+                if ((value instanceof String) && isEncrypted((String) value)) {
+                    names.putIfAbsent(name, name);
+                    if (propertySource instanceof SystemEnvironmentPropertySource) {
+                        names.putIfAbsent(name.toLowerCase(Locale.ENGLISH).replace('_', '.'), name);
+                    }
+                }
+            }
+        }
+
+        return names;
+    }
+
+    private String decrypt(String name, String encryptedValue) {
+        String data = encryptedValue.substring(PREFIX.length(), encryptedValue.length() - SUFFIX.length()).trim();
+        long start = System.nanoTime();
+        FlightRecorderEvents.Event event = FlightRecorderEvents.get().decryption(null, algo);
+        boolean decrypted = false;
+        try {
+            String value = Encrypt.decrypt(data, algo, key);
+            decrypted = true;
+            return value;
+        } catch (GeneralSecurityException | IllegalArgumentException ex) {
+            throw new EncryptException("Cannot decrypt property " + name, ex);
+        } finally {
+            DecryptionStatistics.get().recordDecryption(algo, System.nanoTime() - start, decrypted);
+            event.commit(0);
+        }
+    }
+
+    private static final class DecryptedValue {
+        private final String encryptedValue;
+        private final String value;
+
+        private DecryptedValue(String encryptedValue, String value) {
+            this.encryptedValue = encryptedValue;
+            this.value = value;
+        }
+    }
+}
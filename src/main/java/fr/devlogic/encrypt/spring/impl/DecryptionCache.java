@@ -0,0 +1,216 @@
+package fr.devlogic.encrypt.spring.impl;
+
+import fr.devlogic.encrypt.util.Encrypt;
+import fr.devlogic.encrypt.util.EncryptException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.event.ContextRefreshedEvent;
+
+import javax.crypto.SecretKey;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Memoization of decrypted values, keyed by algorithm, key fingerprint and encrypted value.
+ * <p>
+ * The cache is bounded, the least recently used value is evicted. The key is not retained, only its SHA-256
+ * fingerprint. It is enabled by the {@code encrypted-property.cache.enabled} property, and cleared after each
+ * context refresh unless {@code encrypted-property.cache.clear-on-refresh} is false.
+ */
+public final class DecryptionCache implements ApplicationListener<ContextRefreshedEvent> {
+
+    private static final Logger log = LoggerFactory.getLogger(DecryptionCache.class);
+
+    private static final ThreadLocal<MessageDigest> digest = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException ex) {
+            throw new EncryptException(ex);
+        }
+    });
+
+    private final boolean clearOnRefresh;
+    private final Map<CacheKey, String> values;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    public DecryptionCache(int maxSize, boolean clearOnRefresh) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("maxSize must be positive: " + maxSize);
+        }
+
+        this.clearOnRefresh = clearOnRefresh;
+        this.values = new LinkedHashMap<CacheKey, String>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<CacheKey, String> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    /**
+     * Decrypts the value, or returns the memoized result.
+     *
+     * @param data
+     * Base 64 data
+     * @param algo
+     * algorithm (e.g. "AES")
+     * @param key
+     * Base 64 coded key
+     * @return
+     * Decryption string
+     * @throws GeneralSecurityException
+     * The exception is thrown when the algorithm, key or data is incorrect
+     */
+    public String decrypt(String data, String algo, String key) throws GeneralSecurityException {
+        return decrypt(new CacheKey(algo, fingerprint(key), data), () -> Encrypt.decrypt(data, algo, key));
+    }
+
+    /**
+     * Decrypts the value with a ready-to-use key, or returns the memoized result.
+     *
+     * @param data
+     * Base 64 data
+     * @param algo
+     * algorithm (e.g. "AES")
+     * @param key
+     * Key compatible with used algorithm
+     * @return
+     * Decryption string
+     * @throws GeneralSecurityException
+     * The exception is thrown when the algorithm, key or data is incorrect
+     */
+    public String decrypt(String data, String algo, SecretKey key) throws GeneralSecurityException {
+        return decrypt(data, algo, key, fingerprint(key));
+    }
+
+    /**
+     * Decrypts the value with a ready-to-use key whose fingerprint is already computed, or returns the memoized result.
+     *
+     * @param data
+     * Base 64 data
+     * @param algo
+     * algorithm (e.g. "AES")
+     * @param key
+     * Key compatible with used algorithm
+     * @param keyFingerprint
+     * Fingerprint of the key, see {@link #fingerprint(SecretKey)}
+     * @return
+     * Decryption string
+     * @throws GeneralSecurityException
+     * The exception is thrown when the algorithm, key or data is incorrect
+     */
+    String decrypt(String data, String algo, SecretKey key, byte[] keyFingerprint) throws GeneralSecurityException {
+        return decrypt(new CacheKey(algo, keyFingerprint, data), () -> Encrypt.decrypt(data, algo, key));
+    }
+
+    private String decrypt(CacheKey cacheKey, Decryption decryption) throws GeneralSecurityException {
+        String value;
+        synchronized (values) {
+            value = values.get(cacheKey);
+        }
+
+        if (value != null) {
+            hits.increment();
+            return value;
+        }
+
+        misses.increment();
+        value = decryption.decrypt();
+        synchronized (values) {
+            values.put(cacheKey, value);
+        }
+
+        return value;
+    }
+
+    public void clear() {
+        synchronized (values) {
+            values.clear();
+        }
+    }
+
+    public int size() {
+        synchronized (values) {
+            return values.size();
+        }
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    @Override
+    public void onApplicationEvent(ContextRefreshedEvent event) {
+        log.debug("Decryption cache: {} hits, {} misses", getHits(), getMisses());
+        if (clearOnRefresh) {
+            clear();
+        }
+    }
+
+    private static byte[] fingerprint(String key) {
+        return digest.get().digest(key.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @param key
+     * Key
+     * @return
+     * SHA-256 fingerprint of the encoded key, the encoded copy is wiped
+     */
+    static byte[] fingerprint(SecretKey key) {
+        byte[] encoded = key.getEncoded();
+        try {
+            return digest.get().digest(encoded);
+        } finally {
+            Arrays.fill(encoded, (byte) 0);
+        }
+    }
+
+    @FunctionalInterface
+    private interface Decryption {
+        String decrypt() throws GeneralSecurityException;
+    }
+
+    private static final class CacheKey {
+        private final String algo;
+        private final byte[] keyFingerprint;
+        private final String data;
+        private final int hashCode;
+
+        private CacheKey(String algo, byte[] keyFingerprint, String data) {
+            this.algo = algo;
+            this.keyFingerprint = keyFingerprint;
+            this.data = data;
+            this.hashCode = 31 * (31 * algo.hashCode() + Arrays.hashCode(keyFingerprint)) + data.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof CacheKey)) {
+                return false;
+            }
+            CacheKey other = (CacheKey) o;
+            return algo.equals(other.algo) && Arrays.equals(keyFingerprint, other.keyFingerprint) && data.equals(other.data);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+    }
+}
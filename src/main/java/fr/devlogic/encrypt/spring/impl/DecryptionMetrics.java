@@ -0,0 +1,71 @@
+package fr.devlogic.encrypt.spring.impl;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.TimeGauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Micrometer meters reading the {@link DecryptionStatistics}:
+ * <ul>
+ *     <li>{@code encrypted.property.decryption}: count and latency of the decryptions, tagged by algorithm;</li>
+ *     <li>{@code encrypted.property.decryption.failures}: failed decryptions, tagged by algorithm;</li>
+ *     <li>{@code encrypted.property.class.scan}: count and duration of the scans of the candidate classes;</li>
+ *     <li>{@code encrypted.property.scanned.classes}: number of scanned classes;</li>
+ *     <li>{@code encrypted.property.agent.attach}: duration of the agent attachment.</li>
+ * </ul>
+ * The meters of an algorithm are registered when it is used for the first time, until the binder is closed with its
+ * context.
+ */
+public final class DecryptionMetrics implements MeterBinder, AutoCloseable {
+
+    private static final String PREFIX = "encrypted.property.";
+    private static final String ALGO_TAG = "algo";
+
+    private final DecryptionStatistics statistics;
+    private final List<Runnable> deregistrations = new CopyOnWriteArrayList<>();
+
+    public DecryptionMetrics(DecryptionStatistics statistics) {
+        this.statistics = statistics;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionTimer.builder(PREFIX + "class.scan", statistics, DecryptionStatistics::getScans, DecryptionStatistics::getScanNanos, TimeUnit.NANOSECONDS)
+                .description("Scans of the candidate classes")
+                .register(registry);
+        FunctionCounter.builder(PREFIX + "scanned.classes", statistics, DecryptionStatistics::getScannedClasses)
+                .description("Candidate classes scanned")
+                .register(registry);
+        TimeGauge.builder(PREFIX + "agent.attach", statistics, TimeUnit.NANOSECONDS, s -> Math.max(0, s.getAgentAttachNanos()))
+                .description("Duration of the agent attachment")
+                .register(registry);
+
+        deregistrations.add(statistics.onNewAlgorithm(algo -> {
+            DecryptionStatistics.AlgorithmStatistics algorithm = statistics.getAlgorithms().get(algo);
+            FunctionTimer.builder(PREFIX + "decryption", algorithm, DecryptionStatistics.AlgorithmStatistics::getCount,
+                            DecryptionStatistics.AlgorithmStatistics::getTotalNanos, TimeUnit.NANOSECONDS)
+                    .description("Decrypted values")
+                    .tag(ALGO_TAG, algo)
+                    .register(registry);
+            FunctionCounter.builder(PREFIX + "decryption.failures", algorithm, DecryptionStatistics.AlgorithmStatistics::getFailures)
+                    .description("Failed decryptions")
+                    .tag(ALGO_TAG, algo)
+                    .register(registry);
+        }));
+    }
+
+    /**
+     * Stops registering the meters of the new algorithms in the registries bound so far.
+     */
+    @Override
+    public void close() {
+        deregistrations.forEach(Runnable::run);
+        deregistrations.clear();
+    }
+}
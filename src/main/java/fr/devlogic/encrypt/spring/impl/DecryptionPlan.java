@@ -0,0 +1,253 @@
+package fr.devlogic.encrypt.spring.impl;
+
+import fr.devlogic.encrypt.spring.EncryptionKeyRegistry;
+import org.springframework.lang.Nullable;
+import org.springframework.util.StringUtils;
+
+import javax.crypto.SecretKey;
+import javax.crypto.spec.SecretKeySpec;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Predicate;
+
+/**
+ * Immutable decryption plan of a bean class: the encrypted properties to decrypt, with their resolved setter,
+ * getter, algorithm, key and compiled profile expression. The key is decoded, or looked up in the key registry,
+ * on the first decryption of the property only.
+ * <p>
+ * The lazy properties are kept apart, they are decrypted on first access by {@link LazyDecryption}.
+ * <p>
+ * The plan is computed once per bean class by {@link EncryptedPropertyBeanProcessor}.
+ */
+final class DecryptionPlan {
+
+    static final DecryptionPlan EMPTY = new DecryptionPlan(Collections.emptyList(), Collections.emptyList());
+
+    private final List<PropertyDecryption> properties;
+    private final List<PropertyDecryption> lazyProperties;
+
+    private DecryptionPlan(List<PropertyDecryption> properties, List<PropertyDecryption> lazyProperties) {
+        this.properties = properties;
+        this.lazyProperties = lazyProperties;
+    }
+
+    static DecryptionPlan of(List<PropertyDecryption> properties) {
+        if (properties.isEmpty()) {
+            return EMPTY;
+        }
+
+        List<PropertyDecryption> eagerProperties = new ArrayList<>();
+        List<PropertyDecryption> lazyProperties = new ArrayList<>();
+        properties.forEach(property -> (property.isLazy() ? lazyProperties : eagerProperties).add(property));
+
+        return new DecryptionPlan(Collections.unmodifiableList(eagerProperties), Collections.unmodifiableList(lazyProperties));
+    }
+
+    boolean isEmpty() {
+        return properties.isEmpty() && lazyProperties.isEmpty();
+    }
+
+    /**
+     * @return
+     * Properties decrypted when the bean is initialized
+     */
+    List<PropertyDecryption> getProperties() {
+        return properties;
+    }
+
+    /**
+     * @return
+     * Properties decrypted on first access
+     */
+    List<PropertyDecryption> getLazyProperties() {
+        return lazyProperties;
+    }
+
+    /**
+     * @return
+     * All the properties, when the lazy properties cannot be decrypted on first access
+     */
+    List<PropertyDecryption> getAllProperties() {
+        if (lazyProperties.isEmpty()) {
+            return properties;
+        }
+
+        List<PropertyDecryption> allProperties = new ArrayList<>(properties);
+        allProperties.addAll(lazyProperties);
+        return allProperties;
+    }
+
+    /**
+     * Encrypted property of the plan. The getter and the setter are bound once to method handles.
+     */
+    static final class PropertyDecryption {
+        private static final MethodType GETTER_TYPE = MethodType.methodType(String.class, Object.class);
+        private static final MethodType SETTER_TYPE = MethodType.methodType(void.class, Object.class, String.class);
+
+        private final Method setter;
+        private final Method getter;
+        private final MethodHandle getterHandle;
+        private final MethodHandle setterHandle;
+        private final String algo;
+        private final String key;
+        private final String keyRef;
+        @Nullable
+        private final EncryptionKeyRegistry keyRegistry;
+        private final Predicate<Set<String>> profiles;
+        private final boolean lazy;
+        @Nullable
+        private volatile SecretKey secretKey;
+        @Nullable
+        private volatile byte[] keyFingerprint;
+
+        PropertyDecryption(Method setter, Method getter, String algo, String key, String keyRef,
+                           @Nullable EncryptionKeyRegistry keyRegistry, Predicate<Set<String>> profiles, boolean lazy) throws IllegalAccessException {
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+
+            this.setter = setter;
+            this.getter = getter;
+            this.getterHandle = lookup.unreflect(getter).asType(GETTER_TYPE);
+            this.setterHandle = lookup.unreflect(setter).asType(SETTER_TYPE);
+            this.algo = algo;
+            this.key = key;
+            this.keyRef = keyRef;
+            this.keyRegistry = keyRegistry;
+            this.profiles = profiles;
+            this.lazy = lazy;
+        }
+
+        Method getSetter() {
+            return setter;
+        }
+
+        Method getGetter() {
+            return getter;
+        }
+
+        /**
+         * @return
+         * true when the property is decrypted on first access
+         */
+        boolean isLazy() {
+            return lazy;
+        }
+
+        /**
+         * @param bean
+         * Bean instance
+         * @return
+         * The value returned by the getter
+         * @throws Throwable
+         * Exception thrown by the getter
+         */
+        String read(Object bean) throws Throwable {
+            return (String) getterHandle.invokeExact(bean);
+        }
+
+        /**
+         * @param bean
+         * Bean instance
+         * @param value
+         * The value passed to the setter
+         * @throws Throwable
+         * Exception thrown by the setter
+         */
+        void write(Object bean, String value) throws Throwable {
+            setterHandle.invokeExact(bean, value);
+        }
+
+        /**
+         * @return
+         * algorithm, may be empty when it is declared neither on the setter nor on the class
+         */
+        String getAlgo() {
+            return algo;
+        }
+
+        /**
+         * @return
+         * Base 64 coded key, may be empty when it is declared neither on the setter nor on the class
+         */
+        String getKey() {
+            return key;
+        }
+
+        /**
+         * @return
+         * Alias of the key in the key registry, may be empty
+         */
+        String getKeyRef() {
+            return keyRef;
+        }
+
+        /**
+         * @return
+         * true when the algorithm and the key, or its alias, are declared
+         */
+        boolean hasKey() {
+            return StringUtils.hasLength(algo) && (StringUtils.hasLength(key) || StringUtils.hasLength(keyRef));
+        }
+
+        /**
+         * Resolves the key once: alias in the key registry, or base 64 coded key.
+         *
+         * @return
+         * Ready-to-use key
+         * @throws EncryptedPropertyBeanProcessor.EncryptedPropertyBeanProcessorException
+         * The exception is thrown when there is no key registry or the alias is unknown
+         */
+        SecretKey getSecretKey() {
+            SecretKey resolvedKey = secretKey;
+            if (resolvedKey == null) {
+                resolvedKey = StringUtils.hasLength(keyRef) ? lookupKey() : new SecretKeySpec(Base64.getDecoder().decode(key), algo);
+                secretKey = resolvedKey;
+            }
+
+            return resolvedKey;
+        }
+
+        /**
+         * Computes the fingerprint of the resolved key once, for the cache of the decrypted values.
+         *
+         * @return
+         * Fingerprint of {@link #getSecretKey()}
+         */
+        byte[] getKeyFingerprint() {
+            byte[] fingerprint = keyFingerprint;
+            if (fingerprint == null) {
+                fingerprint = DecryptionCache.fingerprint(getSecretKey());
+                keyFingerprint = fingerprint;
+            }
+
+            return fingerprint;
+        }
+
+        private SecretKey lookupKey() {
+            if (keyRegistry == null) {
+                throw new EncryptedPropertyBeanProcessor.EncryptedPropertyBeanProcessorException("keyRef " + keyRef + " sans registre de clés");
+            }
+
+            SecretKey registeredKey = keyRegistry.getKey(keyRef);
+            if (registeredKey == null) {
+                throw new EncryptedPropertyBeanProcessor.EncryptedPropertyBeanProcessorException("keyRef " + keyRef + " inconnue");
+            }
+
+            return registeredKey;
+        }
+
+        /**
+         * @return
+         * Compiled profile expression, tested against the active profiles
+         */
+        Predicate<Set<String>> getProfiles() {
+            return profiles;
+        }
+    }
+}
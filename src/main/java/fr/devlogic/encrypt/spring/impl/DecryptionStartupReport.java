@@ -0,0 +1,90 @@
+package fr.devlogic.encrypt.spring.impl;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.event.ContextRefreshedEvent;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Cost of the library during the startup, logged once the context is refreshed: total time of the class scans, total
+ * time of the decryptions and the most expensive beans.
+ * <p>
+ * It is enabled by the {@code encrypted-property.startup-report.enabled} property, the number of beans listed is set
+ * by {@code encrypted-property.startup-report.top} (10 by default).
+ */
+public final class DecryptionStartupReport implements ApplicationListener<ContextRefreshedEvent> {
+
+    private static final Logger log = LoggerFactory.getLogger(DecryptionStartupReport.class);
+
+    private final int top;
+    private final Queue<BeanCost> beans = new ConcurrentLinkedQueue<>();
+    private final LongAdder scans = new LongAdder();
+    private final LongAdder scanNanos = new LongAdder();
+
+    public DecryptionStartupReport(int top) {
+        if (top < 0) {
+            throw new IllegalArgumentException("top must not be negative: " + top);
+        }
+
+        this.top = top;
+    }
+
+    void recordBean(String beanName, Class<?> beanClass, long nanos) {
+        beans.add(new BeanCost(beanName, beanClass, nanos));
+    }
+
+    void recordScan(long nanos) {
+        scans.increment();
+        scanNanos.add(nanos);
+    }
+
+    /**
+     * @return
+     * Summary of the costs recorded so far
+     */
+    public String summary() {
+        List<BeanCost> costs = new ArrayList<>(beans);
+        long decryptionNanos = costs.stream().mapToLong(cost -> cost.nanos).sum();
+
+        StringBuilder summary = new StringBuilder(String.format(Locale.ROOT,
+                "Encrypted properties: %d beans decrypted in %.3f ms, %d class scans in %.3f ms",
+                costs.size(), toMillis(decryptionNanos), scans.sum(), toMillis(scanNanos.sum())));
+
+        costs.sort(Comparator.comparingLong((BeanCost cost) -> cost.nanos).reversed());
+        for (BeanCost cost : costs.subList(0, Math.min(top, costs.size()))) {
+            summary.append(String.format(Locale.ROOT, "%n\t%.3f ms\t%s (%s)", toMillis(cost.nanos), cost.beanName, cost.beanClass.getName()));
+        }
+
+        return summary.toString();
+    }
+
+    @Override
+    public void onApplicationEvent(ContextRefreshedEvent event) {
+        log.info(summary());
+    }
+
+    private static double toMillis(long nanos) {
+        return nanos / (double) TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    private static final class BeanCost {
+        private final String beanName;
+        private final Class<?> beanClass;
+        private final long nanos;
+
+        private BeanCost(String beanName, Class<?> beanClass, long nanos) {
+            this.beanName = beanName;
+            this.beanClass = beanClass;
+            this.nanos = nanos;
+        }
+    }
+}
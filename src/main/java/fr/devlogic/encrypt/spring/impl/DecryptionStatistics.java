@@ -0,0 +1,149 @@
+package fr.devlogic.encrypt.spring.impl;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Activity of the library since the start of the JVM: decryptions per algorithm, scans of the candidate classes
+ * and attachment of the agent. No value, key or property name is recorded.
+ * <p>
+ * The statistics are kept in lock-free counters. They are read by the Micrometer meters and the
+ * {@code encryptedproperties} Actuator endpoint, when these libraries are on the class path.
+ */
+public final class DecryptionStatistics {
+
+    private static final DecryptionStatistics instance = new DecryptionStatistics();
+
+    private final ConcurrentMap<String, AlgorithmStatistics> algorithms = new ConcurrentHashMap<>();
+    private final List<Consumer<String>> algorithmListeners = new CopyOnWriteArrayList<>();
+    private final LongAdder scans = new LongAdder();
+    private final LongAdder scanNanos = new LongAdder();
+    private final LongAdder scannedClasses = new LongAdder();
+
+    DecryptionStatistics() {
+    }
+
+    /**
+     * @return
+     * Statistics shared by the bean processor and the {@code ENC(...)} property source
+     */
+    public static DecryptionStatistics get() {
+        return instance;
+    }
+
+    /**
+     * @param algo
+     * algorithm
+     * @param nanos
+     * Duration of the decryption
+     * @param success
+     * false when the decryption failed
+     */
+    void recordDecryption(String algo, long nanos, boolean success) {
+        AlgorithmStatistics statistics = algorithms.get(algo);
+        if (statistics == null) {
+            AlgorithmStatistics newStatistics = new AlgorithmStatistics();
+            statistics = algorithms.putIfAbsent(algo, newStatistics);
+            if (statistics == null) {
+                statistics = newStatistics;
+                algorithmListeners.forEach(listener -> listener.accept(algo));
+            }
+        }
+
+        statistics.record(nanos, success);
+    }
+
+    /**
+     * @param classes
+     * Number of scanned classes
+     * @param nanos
+     * Duration of the scan
+     */
+    void recordScan(int classes, long nanos) {
+        scans.increment();
+        scanNanos.add(nanos);
+        scannedClasses.add(classes);
+    }
+
+    /**
+     * @param listener
+     * Called with each algorithm used for the first time, and at once with the algorithms already used
+     * @return
+     * Deregistration of the listener, the statistics are shared by all the contexts of the JVM
+     */
+    Runnable onNewAlgorithm(Consumer<String> listener) {
+        algorithmListeners.add(listener);
+        algorithms.keySet().forEach(listener);
+        return () -> algorithmListeners.remove(listener);
+    }
+
+    /**
+     * @return
+     * Statistics per algorithm
+     */
+    public Map<String, AlgorithmStatistics> getAlgorithms() {
+        return Collections.unmodifiableMap(algorithms);
+    }
+
+    public long getScans() {
+        return scans.sum();
+    }
+
+    public long getScanNanos() {
+        return scanNanos.sum();
+    }
+
+    public long getScannedClasses() {
+        return scannedClasses.sum();
+    }
+
+    /**
+     * @return
+     * Duration of the agent attachment, -1 when the agent is not attached
+     */
+    public long getAgentAttachNanos() {
+        return EncryptedPropertyAgent.getAttachNanos();
+    }
+
+    /**
+     * Decryptions of an algorithm.
+     */
+    public static final class AlgorithmStatistics {
+        private final LongAdder count = new LongAdder();
+        private final LongAdder failures = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+
+        private void record(long nanos, boolean success) {
+            count.increment();
+            if (!success) {
+                failures.increment();
+            }
+            totalNanos.add(nanos);
+            maxNanos.accumulate(nanos);
+        }
+
+        public long getCount() {
+            return count.sum();
+        }
+
+        public long getFailures() {
+            return failures.sum();
+        }
+
+        public long getTotalNanos() {
+            return totalNanos.sum();
+        }
+
+        public long getMaxNanos() {
+            return maxNanos.get();
+        }
+    }
+}
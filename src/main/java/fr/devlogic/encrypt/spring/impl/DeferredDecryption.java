@@ -0,0 +1,181 @@
+package fr.devlogic.encrypt.spring.impl;
+
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.lang.Nullable;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Decryptions recorded during the singleton instantiation, and run as one batch on the task executor of the context,
+ * or on a bounded thread pool created for the batch when the context has none.
+ * <p>
+ * The batch is run by {@link EncryptedPropertyBeanProcessor#afterSingletonsInstantiated()}: it is a barrier, the
+ * context refresh only goes on once all the recorded properties are decrypted, or fails when the timeout elapses.
+ * The beans created afterwards are decrypted inline.
+ * <p>
+ * A deferred bean is handed out wrapped in a {@link ClassProxy}: the first call made on it before the end of its
+ * decryption, by a constructor, an {@code @PostConstruct} method or a factory method of a dependent bean, decrypts it
+ * at once or waits for the batch thread decrypting it. A bean which cannot be proxied is decrypted inline. Once the
+ * bean is decrypted, the calls only read a volatile flag.
+ */
+final class DeferredDecryption {
+
+    private static final Logger log = LoggerFactory.getLogger(DeferredDecryption.class);
+
+    private final int parallelism;
+    private final Duration timeout;
+    private final Supplier<Executor> executor;
+    private final List<FutureTask<Void>> pending = new ArrayList<>();
+    private boolean done = false;
+
+    DeferredDecryption(int parallelism, Duration timeout) {
+        this(parallelism, timeout, () -> null);
+    }
+
+    /**
+     * @param parallelism
+     * Number of threads of the pool created when there is no executor
+     * @param timeout
+     * Maximum duration of the batch
+     * @param executor
+     * Executor of the context, resolved when the batch is run, may supply null
+     */
+    DeferredDecryption(int parallelism, Duration timeout, Supplier<Executor> executor) {
+        if (parallelism <= 0) {
+            throw new IllegalArgumentException("parallelism must be positive: " + parallelism);
+        }
+
+        this.parallelism = parallelism;
+        this.timeout = timeout;
+        this.executor = executor;
+    }
+
+    /**
+     * Records a decryption.
+     *
+     * @param bean
+     * Bean instance
+     * @param decryption
+     * Decryption of the bean
+     * @return
+     * The bean to hand out, waiting for its decryption, or null when the batch has already been run or the bean
+     * cannot be proxied: the decryption must then be done inline
+     */
+    @Nullable
+    synchronized Object defer(Object bean, Runnable decryption) {
+        if (done) {
+            return null;
+        }
+
+        FutureTask<Void> task = new FutureTask<>(decryption, null);
+        Object proxy = ClassProxy.proxy(bean, new Barrier(task));
+        if (proxy != null) {
+            pending.add(task);
+        }
+        return proxy;
+    }
+
+    /**
+     * Runs the recorded decryptions and waits for their completion.
+     */
+    void run() {
+        List<FutureTask<Void>> decryptions;
+        synchronized (this) {
+            done = true;
+            decryptions = new ArrayList<>(pending);
+            pending.clear();
+        }
+
+        if (decryptions.isEmpty()) {
+            return;
+        }
+
+        Executor contextExecutor = executor.get();
+        if (contextExecutor != null) {
+            log.debug("Decrypting {} beans on the context executor", decryptions.size());
+            runAll(decryptions, contextExecutor);
+            return;
+        }
+
+        log.debug("Decrypting {} beans on {} threads", decryptions.size(), parallelism);
+
+        ExecutorService pool = Executors.newFixedThreadPool(Math.min(parallelism, decryptions.size()), new DecryptionThreadFactory());
+        try {
+            runAll(decryptions, pool);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private void runAll(List<FutureTask<Void>> decryptions, Executor executor) {
+        decryptions.forEach(executor::execute); // a task already run by a caller of its bean is skipped
+
+        long deadline = System.nanoTime() + timeout.toNanos();
+        for (FutureTask<Void> decryption : decryptions) {
+            await(decryption, deadline - System.nanoTime());
+        }
+    }
+
+    private void await(FutureTask<Void> decryption, long nanos) {
+        try {
+            decryption.get(Math.max(0, nanos), TimeUnit.NANOSECONDS);
+        } catch (ExecutionException ex) {
+            Throwable cause = ex.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new EncryptedPropertyBeanProcessor.EncryptedPropertyBeanProcessorException("unencrypt", cause);
+        } catch (TimeoutException ex) {
+            throw new EncryptedPropertyBeanProcessor.EncryptedPropertyBeanProcessorException("Deferred decryption not finished after " + timeout);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new EncryptedPropertyBeanProcessor.EncryptedPropertyBeanProcessorException("Deferred decryption interrupted", ex);
+        }
+    }
+
+    /**
+     * Holds the calls made on a deferred bean until its decryption is over.
+     */
+    private final class Barrier implements MethodInterceptor {
+        private final FutureTask<Void> decryption;
+        private volatile boolean decrypted;
+
+        private Barrier(FutureTask<Void> decryption) {
+            this.decryption = decryption;
+        }
+
+        @Override
+        @Nullable
+        public Object invoke(MethodInvocation invocation) throws Throwable {
+            if (!decrypted) {
+                decryption.run(); // nothing is done when the decryption is already started by another thread
+                await(decryption, timeout.toNanos());
+                decrypted = true;
+            }
+
+            return invocation.proceed();
+        }
+    }
+
+    private static final class DecryptionThreadFactory implements ThreadFactory {
+        private final AtomicInteger threadNumber = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "encrypted-property-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -3,6 +3,10 @@ package fr.devlogic.encrypt.spring.impl;
 import fr.devlogic.encrypt.util.EncryptException;
 import fr.devlogic.encrypt.spring.EncryptedProperty;
 import net.bytebuddy.agent.ByteBuddyAgent;
+import org.objectweb.asm.AnnotationVisitor;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.Opcodes;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -10,6 +14,7 @@ import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.lang.annotation.Annotation;
 import java.lang.instrument.ClassFileTransformer;
 import java.lang.instrument.Instrumentation;
 import java.security.ProtectionDomain;
@@ -18,22 +23,38 @@ import java.util.stream.Collectors;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipOutputStream;
 
+/**
+ * Agent attached to the current JVM, recording the candidate classes of the bean processor: the meta-annotations
+ * of {@link EncryptedProperty} and the classes annotated with {@code @Configuration}.
+ * <p>
+ * The classes loaded after the attachment are filtered on their class file, with a lightweight ASM pass reading only
+ * the class annotations. The other classes are neither loaded nor initialized by the bean processor.
+ */
 public final class EncryptedPropertyAgent {
     private static final Logger log = LoggerFactory.getLogger(EncryptedPropertyAgent.class);
 
+    private static final String ENCRYPTED_PROPERTY = "fr.devlogic.encrypt.spring.EncryptedProperty";
+    private static final String CONFIGURATION = "org.springframework.context.annotation.Configuration";
+    private static final String ENCRYPTED_PROPERTY_DESCRIPTOR = "L" + ENCRYPTED_PROPERTY.replace('.', '/') + ";";
+    private static final String CONFIGURATION_DESCRIPTOR = "L" + CONFIGURATION.replace('.', '/') + ";";
+
     private static List<String> allClasses = null;
     private static final Set<String> classesSet = new HashSet<>();
+    private static volatile long attachNanos = -1;
 
     public static void agentmain(String agentArgs, Instrumentation inst) {
         List<String> classNames =
                 Arrays.stream(inst.getAllLoadedClasses())
                         .filter(c -> c.getClassLoader() != null)
+                        .filter(EncryptedPropertyAgent::isCandidate)
                         .map(Class::getName)
                         .collect(Collectors.toList());
 
-        classesSet.addAll(classNames);
-        allClasses = new ArrayList<>();
-        allClasses.addAll(classesSet);
+        synchronized (classesSet) {
+            classesSet.addAll(classNames);
+            allClasses = new ArrayList<>();
+            allClasses.addAll(classesSet);
+        }
 
         inst.addTransformer(new ClassFileTransformer() {
             @Override
@@ -41,28 +62,101 @@ public final class EncryptedPropertyAgent {
                 if (loader != null && className != null
                         && !className.startsWith("java/") && !className.startsWith("sun/")
                         && !className.startsWith("jdk/") && !className.startsWith("javax/")
-                        && !className.startsWith("com/sun/")) {
+                        && !className.startsWith("com/sun/")
+                        && isCandidate(classfileBuffer)) {
                     String name = className.replace('/', '.');
-                    if (classNames.add(name)) {
-                        allClasses.add(name);
+                    synchronized (classesSet) {
+                        if (classesSet.add(name)) {
+                            allClasses.add(name);
+                        }
                     }
                 }
-                return classfileBuffer;
+                return null; // the class file is not modified
             }
         });
     }
 
+    /**
+     * @return
+     * Names of the candidate classes, in loading order. The list is a snapshot, new candidates are appended to the
+     * next lists.
+     */
     public static List<String> getAllLoadedClasses() {
         if (allClasses == null) {
+            FlightRecorderEvents.Event event = FlightRecorderEvents.get().agentAttach();
             try {
+                long start = System.nanoTime();
                 loadAgent();
+                attachNanos = System.nanoTime() - start;
+                synchronized (classesSet) {
+                    event.commit(classesSet.size());
+                }
             } catch (IOException ex) {
                 log.error("Cannot load agent. All {} meta-annotation are ignored. Reason: {}", EncryptedProperty.class.getSimpleName(), ex.toString());
-                allClasses.clear();
+                synchronized (classesSet) {
+                    allClasses = new ArrayList<>();
+                }
             }
         }
 
-        return Collections.unmodifiableList(allClasses);
+        synchronized (classesSet) {
+            return Collections.unmodifiableList(new ArrayList<>(allClasses));
+        }
+    }
+
+    /**
+     * @return
+     * Duration of the agent attachment, -1 when the agent is not attached
+     */
+    public static long getAttachNanos() {
+        return attachNanos;
+    }
+
+    private static boolean isCandidate(Class<?> c) {
+        try {
+            for (Annotation annotation : c.getDeclaredAnnotations()) {
+                String annotationName = annotation.annotationType().getName();
+                if ((c.isAnnotation() && ENCRYPTED_PROPERTY.equals(annotationName)) || CONFIGURATION.equals(annotationName)) {
+                    return true;
+                }
+            }
+        } catch (RuntimeException | LinkageError ex) {
+            // annotations cannot be resolved, not a candidate
+        }
+
+        return false;
+    }
+
+    private static boolean isCandidate(byte[] classfileBuffer) {
+        try {
+            ClassReader classReader = new ClassReader(classfileBuffer);
+            CandidateClassVisitor visitor = new CandidateClassVisitor((classReader.getAccess() & Opcodes.ACC_ANNOTATION) != 0);
+            classReader.accept(visitor, ClassReader.SKIP_CODE | ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES);
+            return visitor.candidate;
+        } catch (RuntimeException ex) {
+            return false;
+        }
+    }
+
+    /**
+     * Visits the class annotations only: fields and methods are skipped.
+     */
+    private static final class CandidateClassVisitor extends ClassVisitor {
+        private final boolean annotation;
+        private boolean candidate = false;
+
+        private CandidateClassVisitor(boolean annotation) {
+            super(Opcodes.ASM8);
+            this.annotation = annotation;
+        }
+
+        @Override
+        public AnnotationVisitor visitAnnotation(String descriptor, boolean visible) {
+            if (visible && ((annotation && ENCRYPTED_PROPERTY_DESCRIPTOR.equals(descriptor)) || CONFIGURATION_DESCRIPTOR.equals(descriptor))) {
+                candidate = true;
+            }
+            return null;
+        }
     }
 
     private static void loadAgent() throws IOException {
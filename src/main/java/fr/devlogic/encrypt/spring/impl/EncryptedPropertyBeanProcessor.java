@@ -1,46 +1,146 @@
 package fr.devlogic.encrypt.spring.impl;
 
 import fr.devlogic.encrypt.spring.EncryptedProperty;
+import fr.devlogic.encrypt.spring.EncryptionKeyRegistry;
 import fr.devlogic.encrypt.util.Encrypt;
 import fr.devlogic.encrypt.util.EncryptException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.BeanFactory;
+import org.springframework.beans.factory.BeanFactoryAware;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.AnnotatedBeanDefinition;
+import org.springframework.beans.factory.config.BeanDefinition;
 import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.beans.factory.config.ConfigurableListableBeanFactory;
 import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.ApplicationStartupAware;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.NativeDetector;
 import org.springframework.core.env.Environment;
+import org.springframework.core.metrics.ApplicationStartup;
+import org.springframework.core.metrics.StartupStep;
 import org.springframework.lang.Nullable;
 import org.springframework.util.ClassUtils;
 import org.springframework.util.StringUtils;
 
+import javax.crypto.SecretKey;
 import java.lang.annotation.Annotation;
 import java.lang.reflect.*;
 import java.security.GeneralSecurityException;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.BiConsumer;
 import java.util.stream.Collectors;
 
-final class EncryptedPropertyBeanProcessor implements BeanPostProcessor {
+final class EncryptedPropertyBeanProcessor implements BeanPostProcessor, SmartInitializingSingleton, ApplicationStartupAware, BeanFactoryAware {
 
     private static final Logger log = LoggerFactory.getLogger(EncryptedPropertyBeanProcessor.class);
 
-    private final Environment environment;
+    static final String SCAN_STEP = "encrypted-property.scan";
+    static final String DECRYPT_STEP = "encrypted-property.decrypt";
+    static final String DEFERRED_DECRYPT_STEP = "encrypted-property.decrypt.deferred";
+
+    private final ProfileMatcher profileMatcher;
     private final Set<Class<? extends Annotation>> annotations;
     private final Map<Class<?>, Map<Method, Annotation>> encryptedFields;
-    private static final String ALL_PROFILES = "*";
+    private final Map<Class<?>, DecryptionPlan> plans = new ConcurrentHashMap<>();
     private int numProcessedClasses = 0;
 
+    @Nullable
+    private final EncryptedPropertyIndex index;
+    @Nullable
+    private Set<String> indexedSetterClasses;
+    @Nullable
+    private DecryptionCache decryptionCache;
+    @Nullable
+    private DeferredDecryption deferredDecryption;
+    private final DecryptionStatistics statistics = DecryptionStatistics.get();
+    private ApplicationStartup applicationStartup = ApplicationStartup.DEFAULT;
+    @Nullable
+    private DecryptionStartupReport startupReport;
+    @Nullable
+    private EncryptionKeyRegistry keyRegistry;
+    private boolean lazy = false;
+    @Nullable
+    private ConfigurableListableBeanFactory beanFactory;
+
     public EncryptedPropertyBeanProcessor(Environment environment) {
-        this.environment = environment;
+        this.profileMatcher = new ProfileMatcher(environment);
 
         annotations = new HashSet<>();
         annotations.add(EncryptedProperty.class);
 
         encryptedFields = new HashMap<>();
+
+        index = EncryptedPropertyIndex.load(ClassUtils.getDefaultClassLoader());
+    }
+
+    /**
+     * @param decryptionCache
+     * Cache of the decrypted values, null to always decrypt
+     */
+    void setDecryptionCache(@Nullable DecryptionCache decryptionCache) {
+        this.decryptionCache = decryptionCache;
+    }
+
+    /**
+     * @param deferredDecryption
+     * Batch of the decryptions run at the end of the singleton instantiation, null to decrypt inline
+     */
+    void setDeferredDecryption(@Nullable DeferredDecryption deferredDecryption) {
+        this.deferredDecryption = deferredDecryption;
+    }
+
+    /**
+     * @param startupReport
+     * Report of the decryption costs logged after the refresh, null for no report
+     */
+    void setStartupReport(@Nullable DecryptionStartupReport startupReport) {
+        this.startupReport = startupReport;
     }
 
-    private void processClasses() {
+    /**
+     * @param keyRegistry
+     * Registry of the keys referenced by {@link EncryptedProperty#keyRef()}, null when there is none
+     */
+    void setKeyRegistry(@Nullable EncryptionKeyRegistry keyRegistry) {
+        this.keyRegistry = keyRegistry;
+    }
+
+    /**
+     * @param lazy
+     * true to decrypt all the properties on first access, see {@link EncryptedProperty#lazy()}
+     */
+    void setLazy(boolean lazy) {
+        this.lazy = lazy;
+    }
+
+    @Override
+    public void setApplicationStartup(ApplicationStartup applicationStartup) {
+        this.applicationStartup = applicationStartup;
+    }
+
+    @Override
+    public void setBeanFactory(BeanFactory beanFactory) {
+        if (beanFactory instanceof ConfigurableListableBeanFactory) {
+            this.beanFactory = (ConfigurableListableBeanFactory) beanFactory;
+        }
+    }
+
+    private synchronized void processClasses() {
+        if (index != null) {
+            processIndex(index);
+            return;
+        }
+
+        if (NativeDetector.inNativeImage()) {
+            throw new EncryptedPropertyBeanProcessorException("No " + EncryptedPropertyIndex.INDEX_LOCATION
+                    + " index in the native image, the configuration classes must be compiled with "
+                    + "fr.devlogic.encrypt.spring.impl.EncryptedPropertyIndexProcessor"); // the processor class needs javac
+        }
+
         List<String> allLoadedClasses = EncryptedPropertyAgent.getAllLoadedClasses();
         if (allLoadedClasses.size() == numProcessedClasses) {
             return;
@@ -49,26 +149,120 @@ final class EncryptedPropertyBeanProcessor implements BeanPostProcessor {
         // A copy is made to avoid concurrent access
         List<String> classToProcess = new ArrayList<>(allLoadedClasses.subList(numProcessedClasses, allLoadedClasses.size()));
 
-        Set<Class> configurations = new HashSet<>();
-        classToProcess.forEach(classeName -> {
-            try {
-                Class<?> c = Class.forName(classeName);
-                if (Annotation.class.isAssignableFrom(c) && c.getAnnotation(EncryptedProperty.class) != null) {
+        Scan scan = new Scan(false);
+        try {
+            int numAnnotations = annotations.size();
+            ClassLoader classLoader = ClassUtils.getDefaultClassLoader();
+            Set<Class> configurations = new HashSet<>();
+            classToProcess.forEach(classeName -> {
+                try {
+                    Class<?> c = Class.forName(classeName, false, classLoader); // the candidates are not initialized
+                    if (Annotation.class.isAssignableFrom(c) && c.getAnnotation(EncryptedProperty.class) != null) {
+                        annotations.add((Class<? extends Annotation>) c);
+                    }
+
+                    if (c.getAnnotation(Configuration.class) != null) {
+                        configurations.add(c);
+                    }
+                } catch (ClassNotFoundException | NoClassDefFoundError ex) {
+                }
+            });
+
+            if (!configurations.isEmpty()) {
+                lookForStaticFieldsWithEncryptedAnnotation(configurations, encryptedFields);
+            }
+
+            if (!configurations.isEmpty() || annotations.size() != numAnnotations) {
+                plans.clear(); // the plans computed so far may miss the new annotations or static fields
+            }
+
+            numProcessedClasses = allLoadedClasses.size();
+        } finally {
+            scan.end(classToProcess.size());
+        }
+    }
+
+    /**
+     * Reads the classes listed in the compile time index, only once. The agent is not attached: the configuration
+     * beans whose classes are not covered by the index are inspected directly, their lambdas are scanned with ASM.
+     */
+    private void processIndex(EncryptedPropertyIndex index) {
+        if (indexedSetterClasses != null) {
+            return;
+        }
+
+        Scan scan = new Scan(true);
+        try {
+            ClassLoader classLoader = ClassUtils.getDefaultClassLoader();
+
+            index.getClasses(EncryptedPropertyIndex.ANNOTATION).forEach(className -> {
+                Class<?> c = loadIndexedClass(className, classLoader);
+                if (c != null && Annotation.class.isAssignableFrom(c) && c.getAnnotation(EncryptedProperty.class) != null) {
                     annotations.add((Class<? extends Annotation>) c);
                 }
+            });
 
-                if (c.getAnnotation(Configuration.class) != null) {
+            Set<Class> configurations = new HashSet<>();
+            index.getClasses(EncryptedPropertyIndex.FIELD).forEach(className -> {
+                Class<?> c = loadIndexedClass(className, classLoader);
+                if (c != null && c.getAnnotation(Configuration.class) != null) {
                     configurations.add(c);
                 }
-            } catch (ClassNotFoundException | NoClassDefFoundError ex) {
+            });
+
+            if (beanFactory != null) {
+                for (String beanName : beanFactory.getBeanDefinitionNames()) {
+                    BeanDefinition definition = beanFactory.getBeanDefinition(beanName);
+                    if (!(definition instanceof AnnotatedBeanDefinition)
+                            || !((AnnotatedBeanDefinition) definition).getMetadata().isAnnotated(Configuration.class.getName())) {
+                        continue;
+                    }
+
+                    String className = ((AnnotatedBeanDefinition) definition).getMetadata().getClassName();
+                    if (classLoader != null && !index.covers(className, classLoader)) {
+                        Class<?> c = loadIndexedClass(className, classLoader);
+                        try {
+                            if (c != null) {
+                                Arrays.stream(c.getDeclaredFields()).forEach(this::addMetaAnnotations);
+                                configurations.add(c);
+                            }
+                        } catch (LinkageError ex) {
+                            log.debug("Configuration class {} ignored. Reason: {}", className, ex.toString());
+                        }
+                    }
+                }
+            }
+
+            if (!configurations.isEmpty()) {
+                lookForStaticFieldsWithEncryptedAnnotation(configurations, encryptedFields);
             }
-        });
 
-        if (!configurations.isEmpty()) {
-            lookForStaticFieldsWithEncryptedAnnotation(configurations, encryptedFields);
+            indexedSetterClasses = index.getClasses(EncryptedPropertyIndex.SETTER);
+        } finally {
+            scan.end(index.getClasses(EncryptedPropertyIndex.ANNOTATION).size() + index.getClasses(EncryptedPropertyIndex.FIELD).size());
         }
+    }
 
-        numProcessedClasses = allLoadedClasses.size();
+    /**
+     * Records the meta-annotations of {@link EncryptedProperty} found on an element of a class not covered by the
+     * index.
+     */
+    private void addMetaAnnotations(AnnotatedElement element) {
+        for (Annotation annotation : element.getAnnotations()) {
+            if (annotation.annotationType().getAnnotation(EncryptedProperty.class) != null) {
+                annotations.add(annotation.annotationType());
+            }
+        }
+    }
+
+    @Nullable
+    private static Class<?> loadIndexedClass(String className, @Nullable ClassLoader classLoader) {
+        try {
+            return ClassUtils.forName(className, classLoader);
+        } catch (ClassNotFoundException | LinkageError ex) {
+            log.debug("Indexed class {} ignored. Reason: {}", className, ex.toString());
+            return null;
+        }
     }
 
     @Override
@@ -77,32 +271,124 @@ final class EncryptedPropertyBeanProcessor implements BeanPostProcessor {
 
         processClasses(); // looking for new loaded classes
 
+        DecryptionPlan plan = plans.get(beanClass);
+        if (plan == null) {
+            plan = getOrBuildPlan(beanClass);
+        }
+        if (plan.isEmpty()) {
+            return bean;
+        }
+
+        Object lazyBean = null;
+        if (!plan.getLazyProperties().isEmpty()) {
+            lazyBean = LazyDecryption.proxy(bean, plan.getLazyProperties(), property -> unencryptField(bean, beanClass, property));
+        }
+
+        List<DecryptionPlan.PropertyDecryption> properties = lazyBean != null ? plan.getProperties() : plan.getAllProperties();
+        if (properties.isEmpty()) {
+            return lazyBean;
+        }
+
+        // a bean already wrapped for its lazy properties is decrypted inline
+        if (lazyBean == null && deferredDecryption != null) {
+            Object deferredBean = deferredDecryption.defer(bean, () -> decrypt(bean, beanName, beanClass, properties, null));
+            if (deferredBean != null) {
+                return deferredBean;
+            }
+        }
+
+        StartupStep step = applicationStartup.start(DECRYPT_STEP)
+                .tag("beanName", beanName)
+                .tag("beanClass", beanClass.getName())
+                .tag("properties", String.valueOf(properties.size()));
+        decrypt(bean, beanName, beanClass, properties, step);
+
+        return lazyBean != null ? lazyBean : bean;
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        if (deferredDecryption != null) {
+            // the deferred beans are decrypted by several threads, a single step covers the batch
+            StartupStep step = applicationStartup.start(DEFERRED_DECRYPT_STEP);
+            try {
+                deferredDecryption.run();
+            } finally {
+                step.end();
+            }
+        }
+    }
+
+    private void decrypt(Object bean, String beanName, Class<?> beanClass, List<DecryptionPlan.PropertyDecryption> properties, @Nullable StartupStep step) {
+        long start = System.nanoTime();
+        try {
+            properties.forEach(property -> unencryptField(bean, beanClass, property));
+        } finally {
+            if (startupReport != null) {
+                startupReport.recordBean(beanName, beanClass, System.nanoTime() - start);
+            }
+            if (step != null) {
+                step.end();
+            }
+        }
+    }
+
+    /**
+     * The plans are built under the lock of {@link #processClasses()}: the annotations and the static fields they read
+     * are not modified meanwhile, even when the singletons are created by several threads.
+     */
+    private synchronized DecryptionPlan getOrBuildPlan(Class<?> beanClass) {
+        DecryptionPlan plan = plans.get(beanClass);
+        if (plan == null) {
+            plan = buildPlan(beanClass);
+            plans.put(beanClass, plan);
+        }
+
+        return plan;
+    }
+
+    /**
+     * Resolves the encrypted properties of a bean class. The annotations, the getters and the profiles are only
+     * evaluated here, once per class.
+     */
+    private DecryptionPlan buildPlan(Class<?> beanClass) {
+        List<DecryptionPlan.PropertyDecryption> properties = new ArrayList<>();
+
         Map<Method, Annotation> methodAnnotationMap = encryptedFields.get(beanClass);
         if (methodAnnotationMap != null) {
-            methodAnnotationMap.forEach((m, a) -> unencryptField(bean, beanClass, m, null, a));
+            methodAnnotationMap.forEach((m, a) -> addProperty(properties, beanClass, m, null, a));
         }
 
         ConfigurationProperties configurationPropertiesAnnotation = beanClass.getAnnotation(ConfigurationProperties.class);
         Configuration configurationAnnotation = beanClass.getAnnotation(Configuration.class);
 
-        if ((configurationPropertiesAnnotation != null) || (configurationAnnotation != null)) {
+        boolean inspected = (indexedSetterClasses == null) || indexedSetterClasses.contains(beanClass.getName());
+
+        if (!inspected && index != null && ((configurationPropertiesAnnotation != null) || (configurationAnnotation != null))) {
+            ClassLoader classLoader = beanClass.getClassLoader();
+            inspected = classLoader != null && !index.covers(beanClass.getName(), classLoader);
+            if (inspected) {
+                Arrays.stream(beanClass.getDeclaredMethods()).forEach(this::addMetaAnnotations);
+            }
+        }
+
+        if (inspected && ((configurationPropertiesAnnotation != null) || (configurationAnnotation != null))) {
             EncryptedProperty annotationOnClass = beanClass.getAnnotation(EncryptedProperty.class);
             Arrays.stream(beanClass.getDeclaredMethods())
                     .filter(m -> annotations.stream().map(m::getAnnotation).anyMatch(Objects::nonNull))
                     .filter(m -> m.getName().startsWith("set"))
-                    .forEach(setMethod -> unencryptField(bean, beanClass, setMethod, annotationOnClass, null));
+                    .forEach(setMethod -> addProperty(properties, beanClass, setMethod, annotationOnClass, null));
         }
-        return bean;
+
+        log.debug("{} encrypted properties for {}", properties.size(), beanClass.getName());
+
+        return DecryptionPlan.of(properties);
     }
 
-    private void unencryptField(Object bean, Class<?> beanClass, Method setMethod, @Nullable EncryptedProperty annotationOnClass, @Nullable Annotation annotation) {
+    private void addProperty(List<DecryptionPlan.PropertyDecryption> properties, Class<?> beanClass, Method setMethod, @Nullable EncryptedProperty annotationOnClass, @Nullable Annotation annotation) {
         String getMethodName = "get" + setMethod.getName().substring(3);
         try {
             Method getMethod = beanClass.getMethod(getMethodName);
-            String value = (String) getMethod.invoke(bean);
-            if (StringUtils.isEmpty(value)) {
-                return;
-            }
 
             if (annotation == null) {
                 annotation = annotations.stream().map(setMethod::getAnnotation).filter(Objects::nonNull).findFirst().orElseThrow(IllegalStateException::new);
@@ -110,6 +396,8 @@ final class EncryptedPropertyBeanProcessor implements BeanPostProcessor {
 
             String algo;
             String key;
+            String keyRef;
+            boolean lazyProperty;
             String profiles = null;
 
             if (!(annotation instanceof EncryptedProperty)) {
@@ -127,70 +415,71 @@ final class EncryptedPropertyBeanProcessor implements BeanPostProcessor {
             EncryptedProperty annotationOnMethod = (EncryptedProperty) annotation;
             algo = annotationOnMethod.algo();
             key = annotationOnMethod.key();
-            if (StringUtils.isEmpty(profiles)) {
+            keyRef = annotationOnMethod.keyRef();
+            // the global switch leaves the configuration classes out, their @Bean methods read the properties
+            boolean explicitLazy = annotationOnMethod.lazy() || (annotationOnClass != null && annotationOnClass.lazy());
+            lazyProperty = explicitLazy || (lazy && beanClass.getAnnotation(Configuration.class) == null);
+            if (lazyProperty && !LazyDecryption.isSupported(beanClass)) {
+                if (explicitLazy) {
+                    log.warn("{} cannot be proxied, {} is decrypted at once", beanClass.getName(), setMethod.getName());
+                }
+                lazyProperty = false;
+            }
+            if (!StringUtils.hasLength(profiles)) {
                 profiles = annotationOnMethod.profiles();
             }
 
-            if (StringUtils.isEmpty(profiles) && annotationOnClass != null) {
+            if (!StringUtils.hasLength(profiles) && annotationOnClass != null) {
                 profiles = annotationOnClass.profiles();
             }
 
-            profiles = profiles.trim();
-
-            if (StringUtils.hasLength(profiles)) {
-                boolean enabledProfils = false;
-                boolean disabledProfils = false;
-
-                String[] splittedProfiles = profiles.split(",");
-                List<String> activeProfiles = Arrays.asList(environment.getActiveProfiles());
-                for (String profile : splittedProfiles) {
-
-                    profile = profile.trim();
-                    if (StringUtils.isEmpty(profile)) {
-                        continue;
-                    }
-
-                    boolean rejection = false;
-                    if (profile.startsWith("!")) {
-                        rejection = true;
-                        profile = profile.substring(1).trim();
-                        if (StringUtils.isEmpty(profile)) {
-                            continue;
-                        }
-                    }
-
-                    enabledProfils |= ALL_PROFILES.equals(profile) && !rejection;
-                    disabledProfils |= ALL_PROFILES.equals(profile) && rejection;
-
-                    boolean contains = activeProfiles.contains(profile);
-                    if (contains) {
-                        enabledProfils |= !rejection;
-                        disabledProfils |= rejection;
-                    }
-                }
-
-                if (!enabledProfils || disabledProfils) {
-                    return;
-                }
-            }
-
-            if (StringUtils.isEmpty(algo) && annotationOnClass != null) {
+            if (!StringUtils.hasLength(algo) && annotationOnClass != null) {
                 algo = annotationOnClass.algo();
             }
 
-            if (StringUtils.isEmpty(key) && annotationOnClass != null) {
+            if (!StringUtils.hasLength(key) && !StringUtils.hasLength(keyRef) && annotationOnClass != null) {
                 key = annotationOnClass.key();
+                keyRef = annotationOnClass.keyRef();
+            }
+
+            properties.add(new DecryptionPlan.PropertyDecryption(setMethod, getMethod, algo, key, keyRef, keyRegistry,
+                    profileMatcher.compile(profiles), lazyProperty));
+        } catch (NoSuchMethodException | IllegalAccessException | InvocationTargetException e) {
+            throw new EncryptedPropertyBeanProcessorException("unencrypt", e);
+        }
+    }
+
+    private void unencryptField(Object bean, Class<?> beanClass, DecryptionPlan.PropertyDecryption property) {
+        Method setMethod = property.getSetter();
+        try {
+            String value = property.read(bean);
+            if (!StringUtils.hasLength(value) || !property.getProfiles().test(profileMatcher.getActiveProfiles())) {
+                return;
             }
 
-            if (StringUtils.hasLength(key) && StringUtils.hasLength(algo)) {
+            String algo = property.getAlgo();
+
+            if (property.hasKey()) {
+                SecretKey key = property.getSecretKey();
                 log.debug("Unencrypt {} for method {}.{}", value, beanClass.getName(), setMethod.getName());
-                value = Encrypt.decrypt(value, algo, key);
-                setMethod.invoke(bean, value);
+                long start = System.nanoTime();
+                FlightRecorderEvents.Event event = FlightRecorderEvents.get().decryption(beanClass, algo);
+                boolean decrypted = false;
+                try {
+                    value = decryptionCache != null ? decryptionCache.decrypt(value, algo, key, property.getKeyFingerprint()) : Encrypt.decrypt(value, algo, key);
+                    decrypted = true;
+                } finally {
+                    statistics.recordDecryption(algo, System.nanoTime() - start, decrypted);
+                    event.commit(0);
+                }
+                property.write(bean, value);
             } else {
-                throw new EncryptedPropertyBeanProcessorException("algo " + algo + " ou key " + key + " est vide");
+                throw new EncryptedPropertyBeanProcessorException("algo " + algo + " ou key " + property.getKey() + " est vide");
             }
 
-        } catch (NoSuchMethodException | IllegalAccessException | InvocationTargetException | GeneralSecurityException e) {
+        } catch (EncryptedPropertyBeanProcessorException | Error e) {
+            throw e;
+        } catch (Throwable e) {
             throw new EncryptedPropertyBeanProcessorException("unencrypt", e);
         }
     }
@@ -208,7 +497,7 @@ final class EncryptedPropertyBeanProcessor implements BeanPostProcessor {
 
         Set<? extends Class<?>> classesWithBiconsumerFields = biconsumerFields.stream().map(Field::getDeclaringClass).collect(Collectors.toSet());
 
-        Map<? extends Class<?>, Map<String, List<Method>>> lambdaFields = classesWithBiconsumerFields.stream().collect(Collectors.toMap(c -> c, AsmLambdaField::retrieveLambdaStaticFields));
+        Map<? extends Class<?>, Map<String, List<Method>>> lambdaFields = classesWithBiconsumerFields.stream().collect(Collectors.toMap(c -> c, this::retrieveLambdaStaticFields));
 
         biconsumerFields.forEach(f -> {
             Class<?> targetClass = (Class<?>) ((ParameterizedType) f.getGenericType()).getActualTypeArguments()[0];
@@ -232,6 +521,40 @@ final class EncryptedPropertyBeanProcessor implements BeanPostProcessor {
         return staticEncryptedFields;
     }
 
+    /**
+     * Setters referenced by the static {@code BiConsumer} fields, read from the index when the fields are indexed,
+     * from the bytecode otherwise.
+     */
+    private Map<String, List<Method>> retrieveLambdaStaticFields(Class<?> c) {
+        Map<String, List<Method>> fieldLambdas = index != null ? index.resolveLambdaFields(c) : null;
+        return fieldLambdas != null ? fieldLambdas : AsmLambdaField.retrieveLambdaStaticFields(c);
+    }
+
+    /**
+     * Scan of the candidate classes, recorded in the statistics, the Flight Recorder, the startup steps and the
+     * startup report.
+     */
+    private final class Scan {
+        private final long start = System.nanoTime();
+        private final FlightRecorderEvents.Event event;
+        private final StartupStep step;
+
+        private Scan(boolean indexed) {
+            event = FlightRecorderEvents.get().classScan(indexed);
+            step = applicationStartup.start(SCAN_STEP).tag("indexed", String.valueOf(indexed));
+        }
+
+        private void end(int scannedClasses) {
+            long nanos = System.nanoTime() - start;
+            statistics.recordScan(scannedClasses, nanos);
+            event.commit(scannedClasses);
+            step.tag("classes", String.valueOf(scannedClasses)).end();
+            if (startupReport != null) {
+                startupReport.recordScan(nanos);
+            }
+        }
+    }
+
     // NOSONAR
     public static final class EncryptedPropertyBeanProcessorException extends BeansException {
 
@@ -1,14 +1,65 @@
 package fr.devlogic.encrypt.spring.impl;
 
+import fr.devlogic.encrypt.spring.EncryptionKeyRegistry;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.convert.DurationStyle;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.core.env.Environment;
+import org.springframework.core.io.ResourceLoader;
+import org.springframework.core.task.TaskExecutor;
 
 @Configuration
 public class EncryptedPropertyConfiguration {
+    private static final String DEFERRED_MODE = "deferred";
+
+    @Bean
+    public BeanPostProcessor beanPostProcessor(Environment environment, ObjectProvider<DecryptionCache> decryptionCache,
+                                               ObjectProvider<DecryptionStartupReport> startupReport,
+                                               ObjectProvider<EncryptionKeyRegistry> keyRegistry,
+                                               ObjectProvider<TaskExecutor> taskExecutor) {
+        EncryptedPropertyBeanProcessor beanProcessor = new EncryptedPropertyBeanProcessor(environment);
+        beanProcessor.setDecryptionCache(decryptionCache.getIfAvailable());
+        beanProcessor.setStartupReport(startupReport.getIfAvailable());
+        beanProcessor.setKeyRegistry(keyRegistry.getIfAvailable());
+        beanProcessor.setLazy(environment.getProperty("encrypted-property.lazy", Boolean.class, false));
+
+        if (DEFERRED_MODE.equals(environment.getProperty("encrypted-property.decryption.mode"))) {
+            beanProcessor.setDeferredDecryption(new DeferredDecryption(
+                    environment.getProperty("encrypted-property.decryption.parallelism", Integer.class, Runtime.getRuntime().availableProcessors()),
+                    DurationStyle.detectAndParse(environment.getProperty("encrypted-property.decryption.timeout", "60s")),
+                    taskExecutor::getIfUnique));
+        }
+
+        return beanProcessor;
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "encrypted-property.cache.enabled", havingValue = "true")
+    public DecryptionCache decryptionCache(Environment environment) {
+        return new DecryptionCache(
+                environment.getProperty("encrypted-property.cache.max-size", Integer.class, 256),
+                environment.getProperty("encrypted-property.cache.clear-on-refresh", Boolean.class, true));
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "encrypted-property.keystore.location")
+    @ConditionalOnMissingBean(EncryptionKeyRegistry.class)
+    public EncryptionKeyRegistry encryptionKeyRegistry(Environment environment, ResourceLoader resourceLoader) {
+        String keyPassword = environment.getProperty("encrypted-property.keystore.key-password");
+        return KeyStoreKeyRegistry.load(
+                resourceLoader.getResource(environment.getRequiredProperty("encrypted-property.keystore.location")),
+                environment.getProperty("encrypted-property.keystore.type"),
+                environment.getProperty("encrypted-property.keystore.password", "").toCharArray(),
+                keyPassword != null ? keyPassword.toCharArray() : null);
+    }
+
     @Bean
-    public BeanPostProcessor beanPostProcessor(Environment environment) {
-        return new EncryptedPropertyBeanProcessor(environment);
+    @ConditionalOnProperty(name = "encrypted-property.startup-report.enabled", havingValue = "true")
+    public DecryptionStartupReport decryptionStartupReport(Environment environment) {
+        return new DecryptionStartupReport(environment.getProperty("encrypted-property.startup-report.top", Integer.class, 10));
     }
 }
@@ -0,0 +1,53 @@
+package fr.devlogic.encrypt.spring.impl;
+
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Read-only Actuator endpoint summarizing the {@link DecryptionStatistics}. Neither the values nor the keys are
+ * exposed.
+ */
+@Endpoint(id = "encryptedproperties")
+public class EncryptedPropertyEndpoint {
+
+    private final DecryptionStatistics statistics;
+
+    public EncryptedPropertyEndpoint(DecryptionStatistics statistics) {
+        this.statistics = statistics;
+    }
+
+    @ReadOperation
+    public Map<String, Object> summary() {
+        Map<String, Object> decryptions = new TreeMap<>();
+        statistics.getAlgorithms().forEach((algo, algorithm) -> {
+            Map<String, Object> summary = new LinkedHashMap<>();
+            summary.put("count", algorithm.getCount());
+            summary.put("failures", algorithm.getFailures());
+            summary.put("totalTimeMs", toMillis(algorithm.getTotalNanos()));
+            summary.put("maxTimeMs", toMillis(algorithm.getMaxNanos()));
+            decryptions.put(algo, summary);
+        });
+
+        Map<String, Object> classScan = new LinkedHashMap<>();
+        classScan.put("count", statistics.getScans());
+        classScan.put("classes", statistics.getScannedClasses());
+        classScan.put("totalTimeMs", toMillis(statistics.getScanNanos()));
+
+        Map<String, Object> summary = new LinkedHashMap<>();
+        summary.put("decryptions", decryptions);
+        summary.put("classScan", classScan);
+        long attachNanos = statistics.getAgentAttachNanos();
+        summary.put("agentAttachTimeMs", attachNanos < 0 ? null : toMillis(attachNanos));
+
+        return summary;
+    }
+
+    private static double toMillis(long nanos) {
+        return nanos / (double) TimeUnit.MILLISECONDS.toNanos(1);
+    }
+}
@@ -0,0 +1,159 @@
+package fr.devlogic.encrypt.spring.impl;
+
+import fr.devlogic.encrypt.util.EncryptException;
+import org.springframework.core.NativeDetector;
+import org.springframework.lang.Nullable;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.util.*;
+
+/**
+ * Index written at compile time by {@link EncryptedPropertyIndexProcessor}.
+ * <p>
+ * Each line is {@code className=kind[,kind...]} where the kind is {@value #ANNOTATION}, {@value #SETTER} or
+ * {@value #FIELD}. A static {@code BiConsumer} field initialized by a method reference is listed
+ * {@code className#field=targetClassName#setter}. The indexes of all the class path entries are merged.
+ * <p>
+ * A class path entry without index, a jar built without {@link EncryptedPropertyIndexProcessor}, is not covered: its
+ * classes are inspected at runtime. In a native image, the class files are not available as resources: all the
+ * classes are covered, the index being required by the native build.
+ */
+final class EncryptedPropertyIndex {
+
+    static final String INDEX_LOCATION = "META-INF/encrypted-property.index";
+
+    static final String ANNOTATION = "annotation";
+    static final String SETTER = "setter";
+    static final String FIELD = "field";
+
+    static final String MEMBER_SEPARATOR = "#";
+
+    private final Map<String, Set<String>> classesByKind;
+    // class name -> field name -> target class#setter
+    private final Map<String, Map<String, String>> lambdas;
+    // class path entries holding an index
+    private final List<String> roots;
+
+    private EncryptedPropertyIndex(Map<String, Set<String>> classesByKind, Map<String, Map<String, String>> lambdas, List<String> roots) {
+        this.classesByKind = classesByKind;
+        this.lambdas = lambdas;
+        this.roots = roots;
+    }
+
+    /**
+     * Loads the index from the class path.
+     *
+     * @param classLoader
+     * Class loader used to find the index files
+     * @return
+     * The merged index, or null when no index is found
+     */
+    @Nullable
+    static EncryptedPropertyIndex load(ClassLoader classLoader) {
+        Enumeration<URL> urls;
+        try {
+            urls = classLoader.getResources(INDEX_LOCATION);
+        } catch (IOException ex) {
+            throw new EncryptException(ex);
+        }
+
+        if (!urls.hasMoreElements()) {
+            return null;
+        }
+
+        Map<String, Set<String>> classesByKind = new HashMap<>();
+        Map<String, Map<String, String>> lambdas = new HashMap<>();
+        List<String> roots = new ArrayList<>();
+        while (urls.hasMoreElements()) {
+            URL url = urls.nextElement();
+            String location = url.toString();
+            roots.add(location.substring(0, location.length() - INDEX_LOCATION.length()));
+            Properties properties = new Properties();
+            try (InputStream is = url.openStream()) {
+                properties.load(is);
+            } catch (IOException ex) {
+                throw new EncryptException("Cannot read " + url, ex);
+            }
+
+            properties.stringPropertyNames().forEach(className -> {
+                int separator = className.indexOf(MEMBER_SEPARATOR);
+                if (separator >= 0) {
+                    lambdas.computeIfAbsent(className.substring(0, separator), k -> new HashMap<>())
+                            .put(className.substring(separator + 1), properties.getProperty(className).trim());
+                    return;
+                }
+
+                for (String kind : properties.getProperty(className).split(",")) {
+                    classesByKind.computeIfAbsent(kind.trim(), k -> new HashSet<>()).add(className);
+                }
+            });
+        }
+
+        return new EncryptedPropertyIndex(classesByKind, lambdas, roots);
+    }
+
+    /**
+     * @param className
+     * Class name
+     * @param classLoader
+     * Class loader of the class
+     * @return
+     * true when the class comes from a class path entry holding an index, false when the class must be inspected
+     */
+    boolean covers(String className, ClassLoader classLoader) {
+        if (NativeDetector.inNativeImage()) {
+            return true;
+        }
+
+        URL url = classLoader.getResource(className.replace('.', '/') + ".class");
+        if (url == null) {
+            return false;
+        }
+
+        String location = url.toString();
+        return roots.stream().anyMatch(location::startsWith);
+    }
+
+    /**
+     * @param kind
+     * {@value #ANNOTATION}, {@value #SETTER} or {@value #FIELD}
+     * @return
+     * Names of the classes of the given kind
+     */
+    Set<String> getClasses(String kind) {
+        return Collections.unmodifiableSet(classesByKind.getOrDefault(kind, Collections.emptySet()));
+    }
+
+    /**
+     * Resolves the setters referenced by the static {@code BiConsumer} fields of a class, without scanning its
+     * bytecode. The target classes are not initialized.
+     *
+     * @param c
+     * Class declaring the fields
+     * @return
+     * Field names to setters, or null when the fields of the class are not indexed
+     */
+    @Nullable
+    Map<String, List<Method>> resolveLambdaFields(Class<?> c) {
+        Map<String, String> fields = lambdas.get(c.getName());
+        if (fields == null) {
+            return null;
+        }
+
+        Map<String, List<Method>> fieldLambdas = new HashMap<>();
+        fields.forEach((fieldName, member) -> {
+            int separator = member.indexOf(MEMBER_SEPARATOR);
+            try {
+                Class<?> targetClass = Class.forName(member.substring(0, separator), false, c.getClassLoader());
+                fieldLambdas.put(fieldName, Collections.singletonList(targetClass.getMethod(member.substring(separator + 1), String.class)));
+            } catch (ClassNotFoundException | NoSuchMethodException | StringIndexOutOfBoundsException ex) {
+                throw new EncryptException("Cannot resolve the indexed field " + c.getName() + MEMBER_SEPARATOR + fieldName, ex);
+            }
+        });
+
+        return fieldLambdas;
+    }
+}
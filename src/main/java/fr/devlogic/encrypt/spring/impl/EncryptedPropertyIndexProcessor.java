@@ -0,0 +1,332 @@
+package fr.devlogic.encrypt.spring.impl;
+
+import com.sun.source.tree.MemberReferenceTree;
+import com.sun.source.tree.Tree;
+import com.sun.source.tree.VariableTree;
+import com.sun.source.util.Trees;
+import fr.devlogic.encrypt.spring.EncryptedProperty;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.*;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * Annotation processor writing the {@value EncryptedPropertyIndex#INDEX_LOCATION} index at compile time.
+ * <p>
+ * The index lists the meta-annotations of {@link EncryptedProperty}, the classes declaring annotated setters and
+ * the classes declaring annotated static {@link java.util.function.BiConsumer} fields. When the index is present at
+ * runtime, the bean processor reads it instead of attaching {@link EncryptedPropertyAgent}.
+ * <p>
+ * The setter referenced by an annotated static {@code BiConsumer} field, initialized by a method reference, is also
+ * indexed: the bytecode of the class is then not scanned at runtime. When a field of a class cannot be resolved (other
+ * initializer, compiler other than javac), no field of this class is indexed and the class is scanned as before.
+ * <p>
+ * The processor also writes the GraalVM reflection configuration {@value #REFLECT_CONFIG_LOCATION} of the indexed
+ * classes and the resource configuration {@value #RESOURCE_CONFIG_LOCATION} including the index, for a native image.
+ * <p>
+ * On an incremental build, the entries of the classes not compiled again are kept from the previous index. No index is
+ * written when there is nothing to index.
+ */
+@SupportedAnnotationTypes("*")
+public class EncryptedPropertyIndexProcessor extends AbstractProcessor {
+
+    static final String REFLECT_CONFIG_LOCATION = "META-INF/native-image/encrypted-property/reflect-config.json";
+    static final String RESOURCE_CONFIG_LOCATION = "META-INF/native-image/encrypted-property/resource-config.json";
+
+    private static final String ENCRYPTED_PROPERTY = EncryptedProperty.class.getName();
+    private static final String BICONSUMER = "java.util.function.BiConsumer";
+
+    private final Map<String, Set<String>> entries = new TreeMap<>();
+    // class name -> field name -> target class#setter
+    private final Map<String, Map<String, String>> lambdas = new TreeMap<>();
+    private final Set<String> unresolvedLambdaClasses = new HashSet<>();
+    private final Set<String> processedClasses = new HashSet<>();
+    private Trees trees;
+
+    @Override
+    public synchronized void init(ProcessingEnvironment processingEnv) {
+        super.init(processingEnv);
+        try {
+            trees = Trees.instance(processingEnv);
+        } catch (IllegalArgumentException ex) {
+            trees = null; // not javac, the lambdas are scanned at runtime
+        }
+    }
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        for (Element element : roundEnv.getRootElements()) {
+            if (element instanceof TypeElement) {
+                processType((TypeElement) element);
+            }
+        }
+
+        if (roundEnv.processingOver()) {
+            boolean previousIndex = readPreviousIndex();
+            if (previousIndex || !entries.isEmpty()) {
+                writeIndex();
+                writeReflectConfig();
+                writeResourceConfig();
+            }
+        }
+
+        return false;
+    }
+
+    private void processType(TypeElement type) {
+        processedClasses.add(processingEnv.getElementUtils().getBinaryName(type).toString());
+
+        if (type.getKind() == ElementKind.ANNOTATION_TYPE && hasAnnotation(type, ENCRYPTED_PROPERTY)) {
+            addEntry(type, EncryptedPropertyIndex.ANNOTATION);
+        }
+
+        for (Element enclosed : type.getEnclosedElements()) {
+            switch (enclosed.getKind()) {
+                case METHOD:
+                    if (enclosed.getSimpleName().toString().startsWith("set") && isEncrypted(enclosed)) {
+                        addEntry(type, EncryptedPropertyIndex.SETTER);
+                    }
+                    break;
+                case FIELD:
+                    if (enclosed.getModifiers().contains(Modifier.STATIC) && isEncrypted(enclosed)) {
+                        addEntry(type, EncryptedPropertyIndex.FIELD);
+                        addLambda(type, (VariableElement) enclosed);
+                    }
+                    break;
+                case CLASS:
+                case INTERFACE:
+                case ANNOTATION_TYPE:
+                    processType((TypeElement) enclosed);
+                    break;
+                default:
+                    break;
+            }
+        }
+    }
+
+    /**
+     * Checks whether the element is annotated with {@link EncryptedProperty} or one of its meta-annotations. The
+     * meta-annotations met are added to the index, including the ones coming from libraries.
+     */
+    private boolean isEncrypted(Element element) {
+        boolean encrypted = false;
+        for (AnnotationMirror mirror : element.getAnnotationMirrors()) {
+            TypeElement annotationType = (TypeElement) mirror.getAnnotationType().asElement();
+            if (ENCRYPTED_PROPERTY.contentEquals(annotationType.getQualifiedName())) {
+                encrypted = true;
+            } else if (hasAnnotation(annotationType, ENCRYPTED_PROPERTY)) {
+                addEntry(annotationType, EncryptedPropertyIndex.ANNOTATION);
+                encrypted = true;
+            }
+        }
+
+        return encrypted;
+    }
+
+    private static boolean hasAnnotation(Element element, String annotationName) {
+        return element.getAnnotationMirrors().stream()
+                .map(m -> (TypeElement) m.getAnnotationType().asElement())
+                .anyMatch(t -> annotationName.contentEquals(t.getQualifiedName()));
+    }
+
+    private void addEntry(TypeElement type, String kind) {
+        String className = processingEnv.getElementUtils().getBinaryName(type).toString();
+        entries.computeIfAbsent(className, k -> new TreeSet<>()).add(kind);
+    }
+
+    /**
+     * Indexes the setter of a {@code BiConsumer<Target, String>} field initialized by {@code Target::setter}. The
+     * qualifier of the reference must be {@code Target} or one of its super types, and the setter a public instance
+     * method taking a {@code String}: a static method of another class, such as {@code Util::apply}, is left to the
+     * runtime scan.
+     */
+    private void addLambda(TypeElement type, VariableElement field) {
+        TypeMirror fieldType = field.asType();
+        if (fieldType.getKind() != TypeKind.DECLARED) {
+            return;
+        }
+
+        DeclaredType declaredType = (DeclaredType) fieldType;
+        TypeElement fieldTypeElement = (TypeElement) declaredType.asElement();
+        if (!BICONSUMER.contentEquals(fieldTypeElement.getQualifiedName()) || declaredType.getTypeArguments().size() != 2) {
+            return;
+        }
+
+        String className = processingEnv.getElementUtils().getBinaryName(type).toString();
+        TypeMirror targetType = declaredType.getTypeArguments().get(0);
+        Tree tree = trees != null ? trees.getTree(field) : null;
+        Tree initializer = tree instanceof VariableTree ? ((VariableTree) tree).getInitializer() : null;
+
+        if (targetType.getKind() != TypeKind.DECLARED || !(initializer instanceof MemberReferenceTree)
+                || ((MemberReferenceTree) initializer).getMode() != MemberReferenceTree.ReferenceMode.INVOKE) {
+            unresolvedLambdaClasses.add(className);
+            return;
+        }
+
+        MemberReferenceTree reference = (MemberReferenceTree) initializer;
+        TypeElement targetElement = (TypeElement) ((DeclaredType) targetType).asElement();
+        String setter = reference.getName().toString();
+        if (!isQualifiedBy(targetType, reference.getQualifierExpression().toString()) || !hasSetter(targetElement, setter)) {
+            unresolvedLambdaClasses.add(className);
+            return;
+        }
+
+        String targetClass = processingEnv.getElementUtils().getBinaryName(targetElement).toString();
+        lambdas.computeIfAbsent(className, k -> new TreeMap<>()).put(field.getSimpleName().toString(), targetClass + EncryptedPropertyIndex.MEMBER_SEPARATOR + setter);
+    }
+
+    /**
+     * The trees are not attributed yet: the qualifier is compared with the names of the type and its super types.
+     */
+    private boolean isQualifiedBy(TypeMirror type, String qualifier) {
+        int typeArguments = qualifier.indexOf('<');
+        String name = typeArguments >= 0 ? qualifier.substring(0, typeArguments).trim() : qualifier;
+
+        if (type.getKind() == TypeKind.DECLARED) {
+            String qualifiedName = ((TypeElement) ((DeclaredType) type).asElement()).getQualifiedName().toString();
+            if (qualifiedName.equals(name) || qualifiedName.endsWith("." + name)) {
+                return true;
+            }
+        }
+
+        return processingEnv.getTypeUtils().directSupertypes(type).stream().anyMatch(supertype -> isQualifiedBy(supertype, name));
+    }
+
+    private boolean hasSetter(TypeElement type, String name) {
+        return ElementFilter.methodsIn(processingEnv.getElementUtils().getAllMembers(type)).stream()
+                .filter(m -> name.contentEquals(m.getSimpleName()))
+                .filter(m -> m.getModifiers().contains(Modifier.PUBLIC) && !m.getModifiers().contains(Modifier.STATIC))
+                .anyMatch(m -> m.getParameters().size() == 1
+                        && "java.lang.String".equals(m.getParameters().get(0).asType().toString()));
+    }
+
+    /**
+     * Merges the entries of the previous index, except the ones of the classes compiled again or removed.
+     *
+     * @return
+     * true when a previous index exists, it is then written again even if empty
+     */
+    private boolean readPreviousIndex() {
+        Properties properties = new Properties();
+        try {
+            FileObject file = processingEnv.getFiler().getResource(StandardLocation.CLASS_OUTPUT, "", EncryptedPropertyIndex.INDEX_LOCATION);
+            try (InputStream is = file.openInputStream()) {
+                properties.load(is);
+            }
+        } catch (IOException | IllegalArgumentException ex) {
+            return false; // no previous index
+        }
+
+        properties.stringPropertyNames().forEach(key -> {
+            int separator = key.indexOf(EncryptedPropertyIndex.MEMBER_SEPARATOR);
+            String className = separator >= 0 ? key.substring(0, separator) : key;
+            if (processedClasses.contains(className) || processingEnv.getElementUtils().getTypeElement(className.replace('$', '.')) == null) {
+                return;
+            }
+
+            String value = properties.getProperty(key).trim();
+            if (separator >= 0) {
+                lambdas.computeIfAbsent(className, k -> new TreeMap<>()).put(key.substring(separator + 1), value);
+            } else {
+                for (String kind : value.split(",")) {
+                    entries.computeIfAbsent(className, k -> new TreeSet<>()).add(kind.trim());
+                }
+            }
+        });
+
+        return true;
+    }
+
+    private void writeIndex() {
+        try {
+            FileObject file = processingEnv.getFiler().createResource(StandardLocation.CLASS_OUTPUT, "", EncryptedPropertyIndex.INDEX_LOCATION);
+            try (Writer writer = new OutputStreamWriter(file.openOutputStream(), StandardCharsets.UTF_8)) {
+                for (Map.Entry<String, Set<String>> entry : entries.entrySet()) {
+                    writer.write(entry.getKey() + "=" + String.join(",", entry.getValue()) + "\n");
+                }
+                for (Map.Entry<String, Map<String, String>> entry : lambdas.entrySet()) {
+                    if (unresolvedLambdaClasses.contains(entry.getKey())) {
+                        continue;
+                    }
+                    for (Map.Entry<String, String> field : entry.getValue().entrySet()) {
+                        writer.write(entry.getKey() + EncryptedPropertyIndex.MEMBER_SEPARATOR + field.getKey() + "=" + field.getValue() + "\n");
+                    }
+                }
+            }
+        } catch (IOException ex) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, "Cannot write " + EncryptedPropertyIndex.INDEX_LOCATION + ": " + ex);
+        }
+    }
+
+    /**
+     * The indexed classes and the targets of the lambdas are read by reflection: public methods (setters, getters,
+     * attributes of the meta-annotations) and declared fields (static {@code BiConsumer} fields).
+     */
+    private void writeReflectConfig() {
+        Set<String> classNames = new TreeSet<>(entries.keySet());
+        lambdas.forEach((className, fields) -> {
+            if (!unresolvedLambdaClasses.contains(className)) {
+                fields.values().forEach(member -> classNames.add(member.substring(0, member.indexOf(EncryptedPropertyIndex.MEMBER_SEPARATOR))));
+            }
+        });
+        if (classNames.isEmpty()) {
+            return;
+        }
+
+        try {
+            FileObject file = processingEnv.getFiler().createResource(StandardLocation.CLASS_OUTPUT, "", REFLECT_CONFIG_LOCATION);
+            try (Writer writer = new OutputStreamWriter(file.openOutputStream(), StandardCharsets.UTF_8)) {
+                writer.write("[\n");
+                Iterator<String> iterator = classNames.iterator();
+                while (iterator.hasNext()) {
+                    writer.write("  {\"name\": \"" + iterator.next() + "\", \"allDeclaredFields\": true, \"allPublicMethods\": true}");
+                    writer.write(iterator.hasNext() ? ",\n" : "\n");
+                }
+                writer.write("]\n");
+            }
+        } catch (IOException ex) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, "Cannot write " + REFLECT_CONFIG_LOCATION + ": " + ex);
+        }
+    }
+
+    /**
+     * The index is read at runtime, it must be embedded in the native image.
+     */
+    private void writeResourceConfig() {
+        try {
+            FileObject file = processingEnv.getFiler().createResource(StandardLocation.CLASS_OUTPUT, "", RESOURCE_CONFIG_LOCATION);
+            try (Writer writer = new OutputStreamWriter(file.openOutputStream(), StandardCharsets.UTF_8)) {
+                writer.write("{\n");
+                writer.write("  \"resources\": {\n");
+                writer.write("    \"includes\": [\n");
+                writer.write("      {\"pattern\": \"\\\\Q" + EncryptedPropertyIndex.INDEX_LOCATION + "\\\\E\"}\n");
+                writer.write("    ]\n");
+                writer.write("  }\n");
+                writer.write("}\n");
+            }
+        } catch (IOException ex) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, "Cannot write " + RESOURCE_CONFIG_LOCATION + ": " + ex);
+        }
+    }
+}
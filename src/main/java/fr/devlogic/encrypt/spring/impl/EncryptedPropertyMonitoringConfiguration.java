@@ -0,0 +1,49 @@
+package fr.devlogic.encrypt.spring.impl;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingClass;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Micrometer meters and Actuator endpoint, each one declared only when its library is on the class path.
+ */
+@Configuration(proxyBeanMethods = false)
+public class EncryptedPropertyMonitoringConfiguration {
+
+    @Configuration(proxyBeanMethods = false)
+    @ConditionalOnClass(name = "io.micrometer.core.instrument.binder.MeterBinder")
+    static class MetricsConfiguration {
+
+        @Bean
+        @ConditionalOnMissingBean
+        public DecryptionMetrics decryptionMetrics() {
+            return new DecryptionMetrics(DecryptionStatistics.get());
+        }
+
+        /**
+         * Without the Actuator auto-configuration, which binds the {@code MeterBinder} beans, the meters are bound
+         * to the registries of the context.
+         */
+        @Bean
+        @ConditionalOnMissingClass("org.springframework.boot.actuate.autoconfigure.metrics.MetricsAutoConfiguration")
+        public SmartInitializingSingleton decryptionMetricsBinder(DecryptionMetrics decryptionMetrics, ObjectProvider<MeterRegistry> registries) {
+            return () -> registries.orderedStream().forEach(decryptionMetrics::bindTo);
+        }
+    }
+
+    @Configuration(proxyBeanMethods = false)
+    @ConditionalOnClass(name = "org.springframework.boot.actuate.endpoint.annotation.Endpoint")
+    static class EndpointConfiguration {
+
+        @Bean
+        @ConditionalOnMissingBean
+        public EncryptedPropertyEndpoint encryptedPropertyEndpoint() {
+            return new EncryptedPropertyEndpoint(DecryptionStatistics.get());
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package fr.devlogic.encrypt.spring.impl;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.lang.Nullable;
+
+/**
+ * Java Flight Recorder events of the library: agent attachment, scan of the candidate classes, scan of the static
+ * {@code BiConsumer} fields and decryption. The events never carry a key or a value.
+ * <p>
+ * The {@code jdk.jfr} events are only loaded when the JVM provides JFR, otherwise the events do nothing. An event is
+ * started by the factory methods and recorded by {@link Event#commit(int)}.
+ */
+abstract class FlightRecorderEvents {
+
+    private static final Logger log = LoggerFactory.getLogger(FlightRecorderEvents.class);
+
+    static final Event NO_EVENT = count -> {
+    };
+
+    private static final FlightRecorderEvents instance = create();
+
+    static FlightRecorderEvents get() {
+        return instance;
+    }
+
+    private static FlightRecorderEvents create() {
+        try {
+            Class.forName("jdk.jfr.Event", false, FlightRecorderEvents.class.getClassLoader());
+            return new JfrEvents();
+        } catch (ClassNotFoundException | LinkageError ex) {
+            log.debug("Flight Recorder not available, no event is recorded");
+            return new NoEvents();
+        }
+    }
+
+    abstract Event agentAttach();
+
+    /**
+     * @param indexed
+     * true when the classes are read from the compile time index
+     */
+    abstract Event classScan(boolean indexed);
+
+    abstract Event lambdaScan(Class<?> configurationClass);
+
+    /**
+     * @param beanClass
+     * Bean class, null for a value of the environment
+     */
+    abstract Event decryption(@Nullable Class<?> beanClass, String algo);
+
+    /**
+     * Started event.
+     */
+    @FunctionalInterface
+    interface Event {
+        /**
+         * Ends and records the event, if enabled.
+         *
+         * @param count
+         * Number of candidate classes, scanned classes or fields, depending on the event. Ignored by the decryption
+         */
+        void commit(int count);
+    }
+
+    private static final class NoEvents extends FlightRecorderEvents {
+        @Override
+        Event agentAttach() {
+            return NO_EVENT;
+        }
+
+        @Override
+        Event classScan(boolean indexed) {
+            return NO_EVENT;
+        }
+
+        @Override
+        Event lambdaScan(Class<?> configurationClass) {
+            return NO_EVENT;
+        }
+
+        @Override
+        Event decryption(@Nullable Class<?> beanClass, String algo) {
+            return NO_EVENT;
+        }
+    }
+}
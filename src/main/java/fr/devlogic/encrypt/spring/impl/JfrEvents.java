@@ -0,0 +1,120 @@
+package fr.devlogic.encrypt.spring.impl;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import org.springframework.lang.Nullable;
+
+/**
+ * {@code jdk.jfr} implementation of the events. This class is only loaded when JFR is available. A disabled event
+ * is not started.
+ */
+final class JfrEvents extends FlightRecorderEvents {
+
+    private static final String CATEGORY = "Encrypted Property";
+
+    @Override
+    Event agentAttach() {
+        AgentAttachEvent event = new AgentAttachEvent();
+        if (!event.isEnabled()) {
+            return NO_EVENT;
+        }
+
+        event.begin();
+        return count -> {
+            event.candidateClasses = count;
+            event.commit();
+        };
+    }
+
+    @Override
+    Event classScan(boolean indexed) {
+        ClassScanEvent event = new ClassScanEvent();
+        if (!event.isEnabled()) {
+            return NO_EVENT;
+        }
+
+        event.indexed = indexed;
+        event.begin();
+        return count -> {
+            event.scannedClasses = count;
+            event.commit();
+        };
+    }
+
+    @Override
+    Event lambdaScan(Class<?> configurationClass) {
+        LambdaScanEvent event = new LambdaScanEvent();
+        if (!event.isEnabled()) {
+            return NO_EVENT;
+        }
+
+        event.configurationClass = configurationClass;
+        event.begin();
+        return count -> {
+            event.lambdaFields = count;
+            event.commit();
+        };
+    }
+
+    @Override
+    Event decryption(@Nullable Class<?> beanClass, String algo) {
+        DecryptionEvent event = new DecryptionEvent();
+        if (!event.isEnabled()) {
+            return NO_EVENT;
+        }
+
+        event.beanClass = beanClass;
+        event.algo = algo;
+        event.begin();
+        return count -> event.commit();
+    }
+
+    @Name("fr.devlogic.encrypt.AgentAttach")
+    @Label("Agent Attach")
+    @Description("Attachment of the agent listing the candidate classes")
+    @Category(CATEGORY)
+    static class AgentAttachEvent extends jdk.jfr.Event {
+        @Label("Candidate Classes")
+        int candidateClasses;
+    }
+
+    @Name("fr.devlogic.encrypt.ClassScan")
+    @Label("Class Scan")
+    @Description("Scan of the meta-annotations and configuration classes")
+    @Category(CATEGORY)
+    static class ClassScanEvent extends jdk.jfr.Event {
+        @Label("Scanned Classes")
+        int scannedClasses;
+
+        @Label("Indexed")
+        @Description("The classes are read from the compile time index")
+        boolean indexed;
+    }
+
+    @Name("fr.devlogic.encrypt.LambdaScan")
+    @Label("Lambda Scan")
+    @Description("Scan of the static BiConsumer fields of a configuration class")
+    @Category(CATEGORY)
+    static class LambdaScanEvent extends jdk.jfr.Event {
+        @Label("Configuration Class")
+        Class<?> configurationClass;
+
+        @Label("Lambda Fields")
+        int lambdaFields;
+    }
+
+    @Name("fr.devlogic.encrypt.Decryption")
+    @Label("Decryption")
+    @Description("Decryption of a property value")
+    @Category(CATEGORY)
+    static class DecryptionEvent extends jdk.jfr.Event {
+        @Label("Bean Class")
+        @Description("Empty for a value of the environment")
+        Class<?> beanClass;
+
+        @Label("Algorithm")
+        String algo;
+    }
+}
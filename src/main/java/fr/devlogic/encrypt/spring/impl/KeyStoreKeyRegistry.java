@@ -0,0 +1,103 @@
+package fr.devlogic.encrypt.spring.impl;
+
+import fr.devlogic.encrypt.spring.EncryptionKeyRegistry;
+import fr.devlogic.encrypt.util.EncryptException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.io.Resource;
+import org.springframework.lang.Nullable;
+import org.springframework.util.StringUtils;
+
+import javax.crypto.SecretKey;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.GeneralSecurityException;
+import java.security.Key;
+import java.security.KeyStore;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Key registry loaded from a PKCS12 or JCEKS keystore. The secret keys are read once, when the registry is created,
+ * the other entries are ignored.
+ * <p>
+ * The aliases are case insensitive, like in the keystores.
+ */
+public final class KeyStoreKeyRegistry implements EncryptionKeyRegistry {
+
+    private static final Logger log = LoggerFactory.getLogger(KeyStoreKeyRegistry.class);
+
+    private final Map<String, SecretKey> keys;
+
+    /**
+     * @param keyStore
+     * Loaded keystore
+     * @param keyPassword
+     * Password of the keys
+     * @throws GeneralSecurityException
+     * The exception is thrown when a key cannot be recovered
+     */
+    public KeyStoreKeyRegistry(KeyStore keyStore, char[] keyPassword) throws GeneralSecurityException {
+        Map<String, SecretKey> secretKeys = new HashMap<>();
+
+        Enumeration<String> aliases = keyStore.aliases();
+        while (aliases.hasMoreElements()) {
+            String alias = aliases.nextElement();
+            if (keyStore.entryInstanceOf(alias, KeyStore.SecretKeyEntry.class)) {
+                Key key = keyStore.getKey(alias, keyPassword);
+                secretKeys.put(alias.toLowerCase(Locale.ROOT), (SecretKey) key);
+            }
+        }
+
+        log.debug("{} secret keys loaded from the keystore", secretKeys.size());
+
+        this.keys = Collections.unmodifiableMap(secretKeys);
+    }
+
+    /**
+     * Loads the keystore.
+     *
+     * @param resource
+     * Keystore file
+     * @param type
+     * Keystore type, PKCS12 ou JCEKS. When empty, JCEKS for a {@code .jceks} file, PKCS12 otherwise
+     * @param password
+     * Password of the keystore
+     * @param keyPassword
+     * Password of the keys, the keystore password when null
+     * @return
+     * The registry
+     */
+    public static KeyStoreKeyRegistry load(Resource resource, @Nullable String type, char[] password, @Nullable char[] keyPassword) {
+        if (!StringUtils.hasLength(type)) {
+            String filename = resource.getFilename();
+            type = filename != null && filename.toLowerCase(Locale.ROOT).endsWith(".jceks") ? "JCEKS" : "PKCS12";
+        }
+
+        try (InputStream inputStream = resource.getInputStream()) {
+            KeyStore keyStore = KeyStore.getInstance(type);
+            keyStore.load(inputStream, password);
+
+            return new KeyStoreKeyRegistry(keyStore, keyPassword != null ? keyPassword : password);
+        } catch (IOException | GeneralSecurityException ex) {
+            throw new EncryptException("Cannot load the keystore " + resource.getDescription(), ex);
+        }
+    }
+
+    @Override
+    @Nullable
+    public SecretKey getKey(String alias) {
+        return keys.get(alias.toLowerCase(Locale.ROOT));
+    }
+
+    /**
+     * @return
+     * Number of secret keys
+     */
+    public int size() {
+        return keys.size();
+    }
+}
@@ -0,0 +1,111 @@
+package fr.devlogic.encrypt.spring.impl;
+
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.lang.Nullable;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Consumer;
+
+/**
+ * Decryption on first access: the bean is wrapped in a class based proxy, the encrypted value is kept by the bean
+ * until the getter of the property is called through the proxy for the first time. The value is then decrypted once,
+ * whatever the number of threads, and written by the setter.
+ * <p>
+ * The value written is remembered: when the getter then returns another value, set again through the proxy or bound
+ * again on the bean by a rebind of the configuration properties, this new encrypted value is decrypted in turn.
+ * <p>
+ * A call made by the bean on itself does not go through the proxy: the bean sees the encrypted value until the
+ * property is read from outside. A bean class which cannot be safely proxied, see {@link ClassProxy}, is decrypted at
+ * once.
+ */
+final class LazyDecryption implements MethodInterceptor {
+
+    private static final Logger log = LoggerFactory.getLogger(LazyDecryption.class);
+
+    // getter name -> property
+    private final Map<String, LazyProperty> properties = new HashMap<>();
+    private final Consumer<DecryptionPlan.PropertyDecryption> decryption;
+
+    private LazyDecryption(List<DecryptionPlan.PropertyDecryption> properties, Consumer<DecryptionPlan.PropertyDecryption> decryption) {
+        properties.forEach(property -> this.properties.put(property.getGetter().getName(), new LazyProperty(property)));
+        this.decryption = decryption;
+    }
+
+    /**
+     * @param beanClass
+     * Bean class
+     * @return
+     * true when all the methods of the class, the getters included, are intercepted by a class based proxy
+     */
+    static boolean isSupported(Class<?> beanClass) {
+        return ClassProxy.isSupported(beanClass);
+    }
+
+    /**
+     * Wraps the bean.
+     *
+     * @param bean
+     * Bean instance, its lazy properties are still encrypted
+     * @param properties
+     * Lazy properties of the bean
+     * @param decryption
+     * Decryption of one property of the bean
+     * @return
+     * The proxy, or null when the bean cannot be proxied: the properties must then be decrypted at once
+     */
+    @Nullable
+    static Object proxy(Object bean, List<DecryptionPlan.PropertyDecryption> properties, Consumer<DecryptionPlan.PropertyDecryption> decryption) {
+        Object proxy = ClassProxy.proxy(bean, new LazyDecryption(properties, decryption));
+        if (proxy == null) {
+            log.warn("{} cannot be proxied, its lazy properties are decrypted at once", bean.getClass().getName());
+        }
+        return proxy;
+    }
+
+    @Override
+    @Nullable
+    public Object invoke(MethodInvocation invocation) throws Throwable {
+        if (invocation.getArguments().length == 0) {
+            LazyProperty property = properties.get(invocation.getMethod().getName());
+            if (property != null) {
+                property.decrypt(invocation.getThis());
+            }
+        }
+
+        return invocation.proceed();
+    }
+
+    private final class LazyProperty {
+        private final DecryptionPlan.PropertyDecryption property;
+        private volatile boolean decrypted;
+        // value returned by the getter once decrypted
+        @Nullable
+        private volatile String decryptedValue;
+
+        private LazyProperty(DecryptionPlan.PropertyDecryption property) {
+            this.property = property;
+        }
+
+        private void decrypt(Object bean) throws Throwable {
+            if (!isDecrypted(bean)) {
+                synchronized (this) {
+                    if (!isDecrypted(bean)) {
+                        decryption.accept(property);
+                        decryptedValue = property.read(bean);
+                        decrypted = true;
+                    }
+                }
+            }
+        }
+
+        private boolean isDecrypted(Object bean) throws Throwable {
+            return decrypted && Objects.equals(decryptedValue, property.read(bean));
+        }
+    }
+}
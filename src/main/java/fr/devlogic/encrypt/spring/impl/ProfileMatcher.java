@@ -0,0 +1,116 @@
+package fr.devlogic.encrypt.spring.impl;
+
+import org.springframework.core.env.Environment;
+import org.springframework.core.env.Profiles;
+import org.springframework.util.StringUtils;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+
+/**
+ * Evaluation of the {@code profiles} attribute of {@link fr.devlogic.encrypt.spring.EncryptedProperty}.
+ * <p>
+ * Two syntaxes are supported:
+ * <ul>
+ *     <li>a list of profiles separated by commas, a rejected profile is prefixed with "!" and "*" stands for all
+ *     the profiles. The property is decrypted when one of the accepted profiles is active and none of the rejected
+ *     profiles is active, for example "prod, pre-prod, !test";</li>
+ *     <li>a profile expression, as accepted by {@link Profiles#of(String...)}, as soon as the attribute contains
+ *     "&amp;", "|" or parentheses, for example "(prod | pre-prod) &amp; !test". "*" matches any profile.</li>
+ * </ul>
+ * Each distinct expression is compiled once. The active profiles are cached until they change in the environment.
+ */
+final class ProfileMatcher {
+
+    private static final String ALL_PROFILES = "*";
+
+    private final Environment environment;
+    private final Map<String, Predicate<Set<String>>> expressions = new ConcurrentHashMap<>();
+    private volatile ActiveProfiles activeProfiles;
+
+    ProfileMatcher(Environment environment) {
+        this.environment = environment;
+    }
+
+    /**
+     * @param expression
+     * profiles attribute
+     * @return
+     * true when the property must be decrypted for the active profiles
+     */
+    boolean matches(String expression) {
+        return compile(expression).test(getActiveProfiles());
+    }
+
+    /**
+     * @param expression
+     * profiles attribute
+     * @return
+     * Compiled expression, evaluated against the active profiles
+     */
+    Predicate<Set<String>> compile(String expression) {
+        return expressions.computeIfAbsent(expression.trim(), ProfileMatcher::parse);
+    }
+
+    Set<String> getActiveProfiles() {
+        String[] profiles = environment.getActiveProfiles();
+        ActiveProfiles current = activeProfiles;
+        if (current == null || !Arrays.equals(current.names, profiles)) {
+            current = new ActiveProfiles(profiles);
+            activeProfiles = current;
+        }
+
+        return current.set;
+    }
+
+    private static Predicate<Set<String>> parse(String expression) {
+        if (!StringUtils.hasLength(expression)) {
+            return active -> true;
+        }
+
+        if (expression.indexOf('&') >= 0 || expression.indexOf('|') >= 0 || expression.indexOf('(') >= 0 || expression.indexOf(')') >= 0) {
+            Profiles profiles = Profiles.of(expression);
+            return active -> profiles.matches(profile -> ALL_PROFILES.equals(profile) || active.contains(profile));
+        }
+
+        Set<String> accepted = new HashSet<>();
+        Set<String> rejected = new HashSet<>();
+        for (String profile : expression.split(",")) {
+            profile = profile.trim();
+            if (!StringUtils.hasLength(profile)) {
+                continue;
+            }
+
+            boolean rejection = false;
+            if (profile.startsWith("!")) {
+                rejection = true;
+                profile = profile.substring(1).trim();
+                if (!StringUtils.hasLength(profile)) {
+                    continue;
+                }
+            }
+
+            (rejection ? rejected : accepted).add(profile);
+        }
+
+        boolean acceptAll = accepted.contains(ALL_PROFILES);
+        boolean rejectAll = rejected.contains(ALL_PROFILES);
+
+        return active -> {
+            boolean enabledProfils = acceptAll || active.stream().anyMatch(accepted::contains);
+            boolean disabledProfils = rejectAll || active.stream().anyMatch(rejected::contains);
+            return enabledProfils && !disabledProfils;
+        };
+    }
+
+    private static final class ActiveProfiles {
+        private final String[] names;
+        private final Set<String> set;
+
+        private ActiveProfiles(String[] names) {
+            this.names = names;
+            this.set = Collections.unmodifiableSet(new HashSet<>(Arrays.asList(names)));
+        }
+    }
+}
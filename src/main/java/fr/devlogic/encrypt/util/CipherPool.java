@@ -0,0 +1,161 @@
+package fr.devlogic.encrypt.util;
+
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.SecretKeySpec;
+import java.security.GeneralSecurityException;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Bounded pool of initialized {@link Cipher}, keyed by algorithm, key and mode.
+ * <p>
+ * Provider resolution and key setup are only done when no idle cipher is available. A cipher is returned to the
+ * pool once its operation is finished ({@link Cipher#doFinal()} resets it to its initial state). Ciphers using an
+ * initialization vector are never pooled, a new vector must be generated for each operation.
+ */
+final class CipherPool {
+
+    private static final int MAX_KEYS = 64;
+    private static final int MAX_IDLE_CIPHERS_PER_KEY = Math.max(2, Runtime.getRuntime().availableProcessors());
+
+    private static final ConcurrentMap<PoolKey, Queue<Cipher>> pool = new ConcurrentHashMap<>();
+
+    private CipherPool() {
+    }
+
+    /**
+     * Borrows an initialized cipher.
+     *
+     * @param mode
+     * Mode {@link Cipher#DECRYPT_MODE} ou {@link Cipher#ENCRYPT_MODE}
+     * @param algo
+     * algorithm (e.g. "AES")
+     * @param key
+     * Key with size compatible with used algorithm
+     * @return
+     * Cipher to release after the operation
+     * @throws GeneralSecurityException
+     * The exception is thrown when the algorithm or key is incorrect
+     */
+    static PooledCipher acquire(int mode, String algo, byte[] key) throws GeneralSecurityException {
+        return acquire(mode, algo, new SecretKeySpec(key, algo));
+    }
+
+    /**
+     * Borrows an initialized cipher.
+     *
+     * @param mode
+     * Mode {@link Cipher#DECRYPT_MODE} ou {@link Cipher#ENCRYPT_MODE}
+     * @param algo
+     * algorithm (e.g. "AES")
+     * @param key
+     * Key compatible with used algorithm
+     * @return
+     * Cipher to release after the operation
+     * @throws GeneralSecurityException
+     * The exception is thrown when the algorithm or key is incorrect
+     */
+    static PooledCipher acquire(int mode, String algo, SecretKey key) throws GeneralSecurityException {
+        PoolKey poolKey = new PoolKey(mode, algo, key);
+
+        Queue<Cipher> idleCiphers = pool.get(poolKey);
+        Cipher cipher = idleCiphers != null ? idleCiphers.poll() : null;
+        if (cipher == null) {
+            cipher = Cipher.getInstance(algo);
+            cipher.init(mode, key);
+        }
+
+        return new PooledCipher(poolKey, cipher);
+    }
+
+    private static void release(PoolKey poolKey, Cipher cipher) {
+        if (cipher.getIV() != null) {
+            return;
+        }
+
+        Queue<Cipher> idleCiphers = pool.get(poolKey);
+        if (idleCiphers == null) {
+            if (pool.size() >= MAX_KEYS) {
+                return;
+            }
+            idleCiphers = pool.computeIfAbsent(poolKey, k -> new ArrayBlockingQueue<>(MAX_IDLE_CIPHERS_PER_KEY));
+        }
+
+        idleCiphers.offer(cipher);
+    }
+
+    /**
+     * Cipher borrowed from the pool.
+     */
+    static final class PooledCipher {
+        private final PoolKey poolKey;
+        private final Cipher cipher;
+        private boolean released = false;
+
+        private PooledCipher(PoolKey poolKey, Cipher cipher) {
+            this.poolKey = poolKey;
+            this.cipher = cipher;
+        }
+
+        Cipher cipher() {
+            return cipher;
+        }
+
+        /**
+         * Initializes the cipher again after a failed operation, the data buffered by the cipher is dropped. A cipher
+         * which cannot be initialized again is not returned to the pool by {@link #release()}.
+         */
+        void reset() {
+            try {
+                cipher.init(poolKey.mode, poolKey.key);
+            } catch (GeneralSecurityException | RuntimeException ex) {
+                released = true;
+            }
+        }
+
+        /**
+         * Returns the cipher to the pool. Must only be called after a successful {@link Cipher#doFinal()} or a
+         * {@link #reset()}, the cipher must not be used afterwards.
+         */
+        void release() {
+            if (!released) {
+                released = true;
+                CipherPool.release(poolKey, cipher);
+            }
+        }
+    }
+
+    private static final class PoolKey {
+        private final int mode;
+        private final String algo;
+        private final SecretKey key;
+        private final int hashCode;
+
+        private PoolKey(int mode, String algo, SecretKey key) {
+            this.mode = mode;
+            this.algo = algo;
+            this.key = key;
+            this.hashCode = 31 * (31 * mode + algo.hashCode()) + key.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof PoolKey)) {
+                return false;
+            }
+            PoolKey other = (PoolKey) o;
+            return mode == other.mode && algo.equals(other.algo) && key.equals(other.key);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+    }
+}
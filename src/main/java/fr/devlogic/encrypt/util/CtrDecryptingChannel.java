@@ -0,0 +1,290 @@
+package fr.devlogic.encrypt.util;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.NonWritableChannelException;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.Base64;
+
+/**
+ * Read-only channel decrypting an AES/CTR encrypted file, with random access.
+ * <p>
+ * The file starts with the 16 bytes initial counter block, followed by the encrypted data. In CTR mode, the key
+ * stream of any offset only depends on the counter block of that offset: a change of position re-initializes the
+ * cipher with the counter of the block, and only the bytes requested are read and decrypted. Such files are written
+ * by {@link #encrypt(Path, Path, byte[])}.
+ * <p>
+ * The data is not authenticated.
+ */
+public final class CtrDecryptingChannel implements SeekableByteChannel {
+
+    private static final String ALGO = "AES";
+    private static final String TRANSFORMATION = "AES/CTR/NoPadding";
+    private static final int BLOCK_SIZE = 16;
+    private static final int BUFFER_SIZE = 8 * 1024;
+
+    private static final SecureRandom random = new SecureRandom();
+
+    private final FileChannel channel;
+    private final SecretKeySpec key;
+    private final byte[] iv;
+    private final long size;
+    private final Cipher cipher;
+    private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+    private long position = 0;
+    // position of the key stream of the cipher, -1 when the cipher must be initialized
+    private long cipherPosition = -1;
+
+    private CtrDecryptingChannel(FileChannel channel, byte[] key) throws GeneralSecurityException, IOException {
+        this.channel = channel;
+        this.key = new SecretKeySpec(key, ALGO);
+        this.cipher = Cipher.getInstance(TRANSFORMATION);
+
+        ByteBuffer header = ByteBuffer.allocate(BLOCK_SIZE);
+        while (header.hasRemaining()) {
+            if (channel.read(header, header.position()) < 0) {
+                throw new EOFException("Missing initial counter block");
+            }
+        }
+        this.iv = header.array();
+        this.size = channel.size() - BLOCK_SIZE;
+    }
+
+    /**
+     * Opens an encrypted file.
+     *
+     * @param file
+     * File written by {@link #encrypt(Path, Path, byte[])}
+     * @param keyBase64
+     * Base 64 coded AES key
+     * @return
+     * Channel returning the decrypted data
+     * @throws GeneralSecurityException
+     * The exception is thrown when the key is incorrect
+     * @throws IOException
+     * The exception is thrown when the file cannot be read
+     */
+    public static CtrDecryptingChannel open(Path file, String keyBase64) throws GeneralSecurityException, IOException {
+        return open(file, Base64.getDecoder().decode(keyBase64));
+    }
+
+    /**
+     * Opens an encrypted file.
+     *
+     * @param file
+     * File written by {@link #encrypt(Path, Path, byte[])}
+     * @param key
+     * AES key (128, 192 or 256 bits)
+     * @return
+     * Channel returning the decrypted data
+     * @throws GeneralSecurityException
+     * The exception is thrown when the key is incorrect
+     * @throws IOException
+     * The exception is thrown when the file cannot be read
+     */
+    public static CtrDecryptingChannel open(Path file, byte[] key) throws GeneralSecurityException, IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            return new CtrDecryptingChannel(channel, key);
+        } catch (GeneralSecurityException | IOException | RuntimeException ex) {
+            channel.close();
+            throw ex;
+        }
+    }
+
+    /**
+     * File encryption in AES/CTR mode, with a random initial counter block.
+     *
+     * @param input
+     * File to encrypt
+     * @param output
+     * Encrypted file, created or replaced
+     * @param keyBase64
+     * Base 64 coded AES key
+     * @return
+     * Size of the encrypted file
+     * @throws GeneralSecurityException
+     * The exception is thrown when the key is incorrect
+     * @throws IOException
+     * The exception is thrown when a file cannot be read or written
+     */
+    public static long encrypt(Path input, Path output, String keyBase64) throws GeneralSecurityException, IOException {
+        return encrypt(input, output, Base64.getDecoder().decode(keyBase64));
+    }
+
+    /**
+     * File encryption in AES/CTR mode, with a random initial counter block.
+     *
+     * @param input
+     * File to encrypt
+     * @param output
+     * Encrypted file, created or replaced
+     * @param key
+     * AES key (128, 192 or 256 bits)
+     * @return
+     * Size of the encrypted file
+     * @throws GeneralSecurityException
+     * The exception is thrown when the key is incorrect
+     * @throws IOException
+     * The exception is thrown when a file cannot be read or written
+     */
+    public static long encrypt(Path input, Path output, byte[] key) throws GeneralSecurityException, IOException {
+        byte[] iv = new byte[BLOCK_SIZE];
+        random.nextBytes(iv);
+
+        Cipher cipher = Cipher.getInstance(TRANSFORMATION);
+        cipher.init(Cipher.ENCRYPT_MODE, new SecretKeySpec(key, ALGO), new IvParameterSpec(iv));
+
+        try (FileChannel in = FileChannel.open(input, StandardOpenOption.READ);
+             FileChannel out = FileChannel.open(output, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+
+            writeFully(out, ByteBuffer.wrap(iv));
+
+            ByteBuffer plain = ByteBuffer.allocate(BUFFER_SIZE);
+            ByteBuffer encrypted = ByteBuffer.allocate(BUFFER_SIZE);
+            while (in.read(plain) >= 0) {
+                plain.flip();
+                encrypted.clear();
+                cipher.update(plain, encrypted);
+                encrypted.flip();
+                writeFully(out, encrypted);
+                plain.clear();
+            }
+
+            return out.size();
+        }
+    }
+
+    @Override
+    public synchronized int read(ByteBuffer dst) throws IOException {
+        ensureOpen();
+        if (position >= size) {
+            return -1;
+        }
+
+        int total = 0;
+        while (dst.hasRemaining() && position < size) {
+            int length = (int) Math.min(Math.min(dst.remaining(), BUFFER_SIZE), size - position);
+
+            buffer.clear().limit(length);
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, BLOCK_SIZE + position + buffer.position()) < 0) {
+                    throw new EOFException();
+                }
+            }
+            buffer.flip();
+
+            try {
+                seekCipher();
+                cipher.update(buffer, dst);
+            } catch (GeneralSecurityException ex) {
+                throw new EncryptException(ex);
+            }
+
+            position += length;
+            cipherPosition = position;
+            total += length;
+        }
+
+        return total;
+    }
+
+    @Override
+    public int write(ByteBuffer src) {
+        throw new NonWritableChannelException();
+    }
+
+    @Override
+    public synchronized long position() throws IOException {
+        ensureOpen();
+        return position;
+    }
+
+    @Override
+    public synchronized CtrDecryptingChannel position(long newPosition) throws IOException {
+        if (newPosition < 0) {
+            throw new IllegalArgumentException("Negative position: " + newPosition);
+        }
+        ensureOpen();
+
+        position = newPosition;
+        return this;
+    }
+
+    @Override
+    public long size() throws IOException {
+        ensureOpen();
+        return size;
+    }
+
+    @Override
+    public SeekableByteChannel truncate(long size) {
+        throw new NonWritableChannelException();
+    }
+
+    @Override
+    public boolean isOpen() {
+        return channel.isOpen();
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Positions the key stream of the cipher on the current position, unless it already is.
+     */
+    private void seekCipher() throws GeneralSecurityException {
+        if (cipherPosition == position) {
+            return;
+        }
+
+        cipher.init(Cipher.DECRYPT_MODE, key, new IvParameterSpec(counter(position / BLOCK_SIZE)));
+        int skip = (int) (position % BLOCK_SIZE);
+        if (skip > 0) {
+            cipher.update(new byte[skip]);
+        }
+        cipherPosition = position;
+    }
+
+    /**
+     * @param block
+     * Block number
+     * @return
+     * Initial counter block incremented by the block number, as a 128 bits big-endian integer
+     */
+    private byte[] counter(long block) {
+        byte[] counter = iv.clone();
+        long carry = block;
+        for (int i = counter.length - 1; i >= 0 && carry != 0; i--) {
+            long sum = (counter[i] & 0xff) + (carry & 0xff);
+            counter[i] = (byte) sum;
+            carry = (carry >>> 8) + (sum >>> 8);
+        }
+
+        return counter;
+    }
+
+    private void ensureOpen() throws ClosedChannelException {
+        if (!channel.isOpen()) {
+            throw new ClosedChannelException();
+        }
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+}
@@ -1,17 +1,28 @@
 package fr.devlogic.encrypt.util;
 
-import javax.crypto.BadPaddingException;
 import javax.crypto.Cipher;
-import javax.crypto.IllegalBlockSizeException;
-import javax.crypto.spec.SecretKeySpec;
+import javax.crypto.SecretKey;
+import javax.crypto.ShortBufferException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.security.GeneralSecurityException;
+import java.util.Arrays;
 import java.util.Base64;
 import java.util.Random;
 
 public final class Encrypt {
+    private static final int MAPPING_SIZE = 64 * 1024 * 1024;
+
     private Encrypt() {
     }
 
@@ -124,54 +135,7 @@ public final class Encrypt {
      * The exception is thrown when the algorithm, key or data is incorrect
      */
     public static InputStream cipher(InputStream is, int mode, String algo, byte[] key) throws GeneralSecurityException {
-        SecretKeySpec secretKeySpec = new SecretKeySpec(key, algo);
-        Cipher cipher = Cipher.getInstance(algo);
-        cipher.init(mode, secretKeySpec);
-
-        return new InputStream() {
-
-            final byte[] readBuffer = new byte[8192];
-            byte[] writeBuffer = null;
-            int writeBufferIndex = 0;
-            boolean eof = false;
-
-            @Override
-            public int read() throws IOException {
-                if ((writeBuffer == null) || (writeBufferIndex == writeBuffer.length)) {
-                    if (eof) {
-                        return -1;
-                    }
-
-                    writeBufferIndex = 0;
-
-                    int readLength = is.read(readBuffer);
-                    if (readLength < 0) {
-                        try {
-                            writeBuffer = cipher.doFinal();
-                            eof = true;
-                        } catch (IllegalBlockSizeException | BadPaddingException e) {
-                            throw new EncryptException(e);
-                        }
-                    } else {
-                        writeBuffer = cipher.update(readBuffer, 0, readLength);
-                        if (writeBuffer.length == 0) {
-                            try {
-                                writeBuffer = cipher.doFinal();
-                                eof = true;
-                            } catch (IllegalBlockSizeException | BadPaddingException e) {
-                                throw new EncryptException(e);
-                            }
-                        }
-                    }
-
-                    if (writeBuffer.length == 0) {
-                        return -1;
-                    }
-                }
-
-                return writeBuffer[writeBufferIndex++] & 0xff;
-            }
-        };
+        return new EncryptInputStream(is, CipherPool.acquire(mode, algo, key));
     }
 
     /**
@@ -211,41 +175,7 @@ public final class Encrypt {
      * The exception is thrown when the algorithm, key or data is incorrect
      */
     public static OutputStream cipher(OutputStream os, int mode, String algo, byte[] key) throws GeneralSecurityException {
-
-        SecretKeySpec secretKeySpec = new SecretKeySpec(key, algo);
-        Cipher cipher = Cipher.getInstance(algo);
-        cipher.init(mode, secretKeySpec);
-
-        return new OutputStream() {
-
-            final byte[] readBuffer = new byte[8192];
-            byte[] writeBuffer = null;
-            int readBufferIndex = 0;
-
-            @Override
-            public void write(int b) throws IOException {
-                readBuffer[readBufferIndex++] = (byte) b;
-                if (readBufferIndex == readBuffer.length) {
-                    writeBuffer = cipher.update(readBuffer);
-                    readBufferIndex = 0;
-                    os.write(writeBuffer);
-                }
-            }
-
-            @Override
-            public void close() throws IOException {
-                try {
-                    if (readBufferIndex > 0) {
-                        writeBuffer = cipher.doFinal(readBuffer, 0, readBufferIndex);
-                    } else {
-                        writeBuffer = cipher.doFinal();
-                    }
-                    os.write(writeBuffer);
-                } catch (GeneralSecurityException ex) {
-                    throw new EncryptException(ex);
-                }
-            }
-        };
+        return new EncryptOutputStream(os, CipherPool.acquire(mode, algo, key));
     }
 
     /**
@@ -284,6 +214,213 @@ public final class Encrypt {
         return new String(cipher(Base64.getDecoder().decode(data), Cipher.DECRYPT_MODE, algo, key));
     }
 
+    /**
+     * String encryption with a ready-to-use key
+     *
+     * @param data
+     * Data to encrypt
+     * @param algo
+     * algorithm (e.g. "AES")
+     * @param key
+     * Key compatible with used algorithm
+     * @return
+     * Encrypted string coded in base 64
+     * @throws GeneralSecurityException
+     * The exception is thrown when the algorithm, key or data is incorrect
+     */
+    public static String encrypt(String data, String algo, SecretKey key) throws GeneralSecurityException {
+        return Base64.getEncoder().encodeToString(cipher(data.getBytes(), Cipher.ENCRYPT_MODE, algo, key));
+    }
+
+    /**
+     * Decryption of base 64 coded data with a ready-to-use key
+     *
+     * @param data
+     * Base 64 data
+     * @param algo
+     * algorithm (e.g. "AES")
+     * @param key
+     * Key compatible with used algorithm
+     * @return
+     * Decryption string
+     * @throws GeneralSecurityException
+     * The exception is thrown when the algorithm, key or data is incorrect
+     */
+    public static String decrypt(String data, String algo, SecretKey key) throws GeneralSecurityException {
+        return new String(cipher(Base64.getDecoder().decode(data), Cipher.DECRYPT_MODE, algo, key));
+    }
+
+    /**
+     * Data decryption or encryption with a ready-to-use key, the key is not decoded again.
+     *
+     * @param data
+     * Data
+     * @param mode
+     * Mode {@link Cipher#DECRYPT_MODE} ou {@link Cipher#ENCRYPT_MODE}
+     * @param algo
+     * algorithm (e.g. "AES")
+     * @param key
+     * Key compatible with used algorithm
+     * @return
+     * Decrypted or encrypted data
+     * @throws GeneralSecurityException
+     * The exception is thrown when the algorithm, key or data is incorrect
+     */
+    public static byte[] cipher(byte[] data, int mode, String algo, SecretKey key) throws GeneralSecurityException {
+        CipherPool.PooledCipher pooledCipher = CipherPool.acquire(mode, algo, key);
+        byte[] result = pooledCipher.cipher().doFinal(data);
+        pooledCipher.release();
+
+        return result;
+    }
+
+    /**
+     * Decryption of base 64 coded data into a caller buffer. The base 64 decoding uses a scratch buffer of the thread.
+     * The data is decrypted by {@link Cipher#update(byte[], int, int, byte[], int)} straight into the output, only the
+     * last block goes through {@link Cipher#doFinal(byte[], int)}: with a padding, the provider then allocates a
+     * temporary array of one block instead of the size of the data. On failure, the bytes already written are wiped and
+     * the pooled cipher is initialized again. An algorithm requiring parameters, such as GCM and its nonce, is not
+     * supported: the pooled ciphers are initialized with the key only.
+     *
+     * @param data
+     * Base 64 data
+     * @param output
+     * Decrypted data
+     * @param offset
+     * Offset in the output. The remaining size must be at least the size of the decoded data
+     * @param algo
+     * algorithm (e.g. "AES")
+     * @param key
+     * Key compatible with used algorithm
+     * @return
+     * Number of bytes written in the output
+     * @throws GeneralSecurityException
+     * The exception is thrown when the algorithm, key or data is incorrect, or when the output is too small
+     */
+    public static int decrypt(CharSequence data, byte[] output, int offset, String algo, SecretKey key) throws GeneralSecurityException {
+        byte[] encrypted = ScratchBuffers.get().encrypted(ScratchBuffers.decodedSize(data));
+        int length = ScratchBuffers.decodeBase64(data, encrypted);
+
+        CipherPool.PooledCipher pooledCipher = CipherPool.acquire(Cipher.DECRYPT_MODE, algo, key);
+        int result = 0;
+        try {
+            result = pooledCipher.cipher().update(encrypted, 0, length, output, offset);
+            result += pooledCipher.cipher().doFinal(output, offset + result);
+        } catch (GeneralSecurityException | RuntimeException ex) {
+            Arrays.fill(output, offset, offset + result, (byte) 0); // the blocks decrypted before the failure
+            pooledCipher.reset(); // a short output leaves the data buffered in the cipher
+            throw ex;
+        } finally {
+            pooledCipher.release();
+        }
+
+        return result;
+    }
+
+    /**
+     * Decryption of base 64 coded data into a caller buffer, see {@link #decrypt(CharSequence, byte[], int, String, SecretKey)}.
+     * The decrypted data goes through a scratch buffer of the thread, wiped once copied.
+     *
+     * @param data
+     * Base 64 data
+     * @param output
+     * Decrypted data, written from its position
+     * @param algo
+     * algorithm (e.g. "AES")
+     * @param key
+     * Key compatible with used algorithm
+     * @return
+     * Number of bytes written in the output buffer
+     * @throws GeneralSecurityException
+     * The exception is thrown when the algorithm, key or data is incorrect, or when the output buffer is too small
+     */
+    public static int decrypt(CharSequence data, ByteBuffer output, String algo, SecretKey key) throws GeneralSecurityException {
+        byte[] decrypted = ScratchBuffers.get().decrypted(ScratchBuffers.decodedSize(data));
+        int length = 0;
+        try {
+            length = decrypt(data, decrypted, 0, algo, key);
+            if (length > output.remaining()) {
+                throw new ShortBufferException("Output buffer too small: " + output.remaining() + " < " + length);
+            }
+
+            output.put(decrypted, 0, length);
+            return length;
+        } finally {
+            Arrays.fill(decrypted, 0, length, (byte) 0);
+        }
+    }
+
+    /**
+     * Decryption of base 64 coded data into a caller character array, to be wiped by the caller, see
+     * {@link #decrypt(CharSequence, byte[], int, String, SecretKey)}. The characters are decoded with the default
+     * charset, like {@link #decrypt(String, String, SecretKey)}. The decrypted data goes through a scratch buffer of the
+     * thread, wiped once decoded.
+     *
+     * @param data
+     * Base 64 data
+     * @param output
+     * Decrypted characters, written from the start
+     * @param algo
+     * algorithm (e.g. "AES")
+     * @param key
+     * Key compatible with used algorithm
+     * @return
+     * Number of characters written in the output
+     * @throws GeneralSecurityException
+     * The exception is thrown when the algorithm, key or data is incorrect, or when the output is too small
+     */
+    public static int decrypt(CharSequence data, char[] output, String algo, SecretKey key) throws GeneralSecurityException {
+        ScratchBuffers scratchBuffers = ScratchBuffers.get();
+        byte[] decrypted = scratchBuffers.decrypted(ScratchBuffers.decodedSize(data));
+        int length = 0;
+        try {
+            length = decrypt(data, decrypted, 0, algo, key);
+
+            CharsetDecoder charsetDecoder = scratchBuffers.charsetDecoder();
+            CharBuffer chars = CharBuffer.wrap(output);
+            CoderResult result = charsetDecoder.decode(ByteBuffer.wrap(decrypted, 0, length), chars, true);
+            if (!result.isOverflow()) {
+                result = charsetDecoder.flush(chars);
+            }
+            if (result.isOverflow()) {
+                Arrays.fill(output, '\0');
+                throw new ShortBufferException("Output too small: " + output.length + " characters");
+            }
+
+            return chars.position();
+        } finally {
+            Arrays.fill(decrypted, 0, length, (byte) 0);
+        }
+    }
+
+    /**
+     * Decryption of base 64 coded data into a character array, to be wiped by the caller instead of an immutable
+     * {@link String}. The characters are decoded with the default charset.
+     *
+     * @param data
+     * Base 64 data
+     * @param algo
+     * algorithm (e.g. "AES")
+     * @param key
+     * Key compatible with used algorithm
+     * @return
+     * Decrypted characters
+     * @throws GeneralSecurityException
+     * The exception is thrown when the algorithm, key or data is incorrect
+     */
+    public static char[] decryptChars(CharSequence data, String algo, SecretKey key) throws GeneralSecurityException {
+        ScratchBuffers scratchBuffers = ScratchBuffers.get();
+        int maxCharsPerByte = (int) Math.ceil(scratchBuffers.charsetDecoder().maxCharsPerByte());
+        char[] chars = scratchBuffers.chars(ScratchBuffers.decodedSize(data) * maxCharsPerByte);
+        int length = 0;
+        try {
+            length = decrypt(data, chars, algo, key);
+            return Arrays.copyOf(chars, length);
+        } finally {
+            Arrays.fill(chars, 0, length, '\0');
+        }
+    }
+
     /**
      * Data decryption or encryption.
      *
@@ -304,11 +441,177 @@ public final class Encrypt {
         Base64.Decoder decoder = Base64.getDecoder();
         byte[] keyBytes = decoder.decode(key);
 
-        SecretKeySpec secretKeySpec = new SecretKeySpec(keyBytes, algo);
-        Cipher cipher = Cipher.getInstance(algo);
-        cipher.init(mode, secretKeySpec);
+        CipherPool.PooledCipher pooledCipher = CipherPool.acquire(mode, algo, keyBytes);
+        byte[] result = pooledCipher.cipher().doFinal(data);
+        pooledCipher.release();
+
+        return result;
+    }
+
+    /**
+     * Buffer encryption
+     *
+     * @param input
+     * Data, from its position to its limit. The position is moved to the limit
+     * @param output
+     * Encrypted data, written from its position
+     * @param algo
+     * algorithm (e.g. "AES")
+     * @param keyBase64
+     * Base 64 coded key
+     * @return
+     * Number of bytes written in the output buffer
+     * @throws GeneralSecurityException
+     * The exception is thrown when the algorithm, key or data is incorrect, or when the output buffer is too small
+     */
+    public static int encrypt(ByteBuffer input, ByteBuffer output, String algo, String keyBase64) throws GeneralSecurityException {
+        return cipher(input, output, Cipher.ENCRYPT_MODE, algo, Base64.getDecoder().decode(keyBase64));
+    }
+
+    /**
+     * Buffer decryption
+     *
+     * @param input
+     * Encrypted data, from its position to its limit. The position is moved to the limit
+     * @param output
+     * Decrypted data, written from its position
+     * @param algo
+     * algorithm (e.g. "AES")
+     * @param keyBase64
+     * Base 64 coded key
+     * @return
+     * Number of bytes written in the output buffer
+     * @throws GeneralSecurityException
+     * The exception is thrown when the algorithm, key or data is incorrect, or when the output buffer is too small
+     */
+    public static int decrypt(ByteBuffer input, ByteBuffer output, String algo, String keyBase64) throws GeneralSecurityException {
+        return cipher(input, output, Cipher.DECRYPT_MODE, algo, Base64.getDecoder().decode(keyBase64));
+    }
+
+    /**
+     * Buffer encryption or decryption. Direct buffers are ciphered without copy on the heap.
+     *
+     * @param input
+     * Data, from its position to its limit. The position is moved to the limit
+     * @param output
+     * Encrypted or decrypted data, written from its position. Its remaining size must be at least
+     * {@link Cipher#getOutputSize(int)} of the input size
+     * @param mode
+     * Mode {@link Cipher#DECRYPT_MODE} ou {@link Cipher#ENCRYPT_MODE}
+     * @param algo
+     * algorithm (e.g. "AES")
+     * @param key
+     * Key with size compatible with used algorithm
+     * @return
+     * Number of bytes written in the output buffer
+     * @throws GeneralSecurityException
+     * The exception is thrown when the algorithm, key or data is incorrect, or when the output buffer is too small
+     */
+    public static int cipher(ByteBuffer input, ByteBuffer output, int mode, String algo, byte[] key) throws GeneralSecurityException {
+        CipherPool.PooledCipher pooledCipher = CipherPool.acquire(mode, algo, key);
+        int length = pooledCipher.cipher().doFinal(input, output);
+        pooledCipher.release();
 
-        return cipher.doFinal(data);
+        return length;
+    }
+
+    /**
+     * File encryption
+     *
+     * @param input
+     * File to encrypt
+     * @param output
+     * Encrypted file, created or replaced
+     * @param algo
+     * algorithm (e.g. "AES")
+     * @param keyBase64
+     * Base 64 coded key
+     * @return
+     * Size of the encrypted file
+     * @throws GeneralSecurityException
+     * The exception is thrown when the algorithm, key or data is incorrect
+     * @throws IOException
+     * The exception is thrown when a file cannot be read or written
+     */
+    public static long encrypt(Path input, Path output, String algo, String keyBase64) throws GeneralSecurityException, IOException {
+        return cipher(input, output, Cipher.ENCRYPT_MODE, algo, Base64.getDecoder().decode(keyBase64));
+    }
+
+    /**
+     * File decryption
+     *
+     * @param input
+     * File to decrypt
+     * @param output
+     * Decrypted file, created or replaced
+     * @param algo
+     * algorithm (e.g. "AES")
+     * @param keyBase64
+     * Base 64 coded key
+     * @return
+     * Size of the decrypted file
+     * @throws GeneralSecurityException
+     * The exception is thrown when the algorithm, key or data is incorrect
+     * @throws IOException
+     * The exception is thrown when a file cannot be read or written
+     */
+    public static long decrypt(Path input, Path output, String algo, String keyBase64) throws GeneralSecurityException, IOException {
+        return cipher(input, output, Cipher.DECRYPT_MODE, algo, Base64.getDecoder().decode(keyBase64));
+    }
+
+    /**
+     * File encryption or decryption. The files are memory-mapped by windows of 64 MiB: the data does not go
+     * through the heap.
+     *
+     * @param input
+     * File to encrypt or decrypt
+     * @param output
+     * Encrypted or decrypted file, created or replaced
+     * @param mode
+     * Mode {@link Cipher#DECRYPT_MODE} ou {@link Cipher#ENCRYPT_MODE}
+     * @param algo
+     * algorithm (e.g. "AES")
+     * @param key
+     * Key with size compatible with used algorithm
+     * @return
+     * Size of the output file
+     * @throws GeneralSecurityException
+     * The exception is thrown when the algorithm, key or data is incorrect
+     * @throws IOException
+     * The exception is thrown when a file cannot be read or written
+     */
+    public static long cipher(Path input, Path output, int mode, String algo, byte[] key) throws GeneralSecurityException, IOException {
+        CipherPool.PooledCipher pooledCipher = CipherPool.acquire(mode, algo, key);
+        Cipher cipher = pooledCipher.cipher();
+
+        try (FileChannel in = FileChannel.open(input, StandardOpenOption.READ);
+             FileChannel out = FileChannel.open(output, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                     StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+
+            long size = in.size();
+            long inputPosition = 0;
+            long outputPosition = 0;
+            do {
+                int length = (int) Math.min(MAPPING_SIZE, size - inputPosition);
+                boolean last = inputPosition + length == size;
+
+                MappedByteBuffer inputBuffer = in.map(FileChannel.MapMode.READ_ONLY, inputPosition, length);
+                int outputSize = cipher.getOutputSize(length);
+                if (outputSize > 0) {
+                    MappedByteBuffer outputBuffer = out.map(FileChannel.MapMode.READ_WRITE, outputPosition, outputSize);
+                    outputPosition += last ? cipher.doFinal(inputBuffer, outputBuffer) : cipher.update(inputBuffer, outputBuffer);
+                } else if (last) {
+                    cipher.doFinal();
+                }
+
+                inputPosition += length;
+            } while (inputPosition < size);
+
+            out.truncate(outputPosition);
+            pooledCipher.release();
+
+            return outputPosition;
+        }
     }
 
     /**
@@ -330,36 +633,21 @@ public final class Encrypt {
     }
 
     /**
-     * Key generation or string encryption
+     * Key generation, encryption or decryption of values
      * @param args
-     * Parameters list (-genKey sizeInBits OU -crypt algo key data1 [data2...])
+     * Parameters list (-genKey sizeInBits OU -crypt|-decrypt algo key data1 [data2...]
+     * OU -crypt-file|-decrypt-file algo key file OU -crypt-stream|-decrypt-stream algo key)
      * @throws GeneralSecurityException
-     * The exception is thrown when the algorithm, key or data is incorrect
+     * The exception is thrown when the algorithm or key is incorrect
      */
     public static void main(String[] args) throws GeneralSecurityException {
-        if (args.length == 0) {
-            System.out.println("usage:\n\t-genKey sizeInBits\n\t-crypt algo key data1 [data2...]");
-            return;
-        }
-
-        String cmd = args[0];
-        switch (cmd) {
-            case "-genKey": {
-                int size = Integer.parseInt(args[1]);
-                System.out.println(Base64.getEncoder().encodeToString(Encrypt.genKey(size)));
-                break;
-            }
-            case "-crypt": {
-                String algo = args[1];
-                String keyBase64 = args[2];
-                for (int i = 3; i < args.length; i++) {
-                    String data = args[i];
-                    System.out.println(data + " -> \"" + Encrypt.encrypt(data, algo, keyBase64) + "\"");
-                }
-                break;
+        try {
+            int errors = new EncryptCommandLine(System.in, System.out, System.err).run(args);
+            if (errors > 0) {
+                System.exit(1);
             }
-            default:
-                System.err.println("Unknown command " + cmd);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
         }
     }
 }
@@ -0,0 +1,287 @@
+package fr.devlogic.encrypt.util;
+
+import javax.crypto.Cipher;
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.GeneralSecurityException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Commands of the {@link Encrypt#main(String[])} tool.
+ * <p>
+ * The values are encrypted or decrypted with a single initialized cipher per command. In the file and stream modes,
+ * the values are read one per line and each result is written on its own line, in the same order: an invalid value
+ * gives an empty line and an error message. In the directory mode, the files are processed in parallel with the
+ * memory-mapped file encryption of {@link Encrypt}.
+ */
+final class EncryptCommandLine {
+
+    static final String USAGE = "usage:\n"
+            + "\t-genKey sizeInBits\n"
+            + "\t-crypt algo key data1 [data2...]\n"
+            + "\t-decrypt algo key data1 [data2...]\n"
+            + "\t-crypt-file algo key file\n"
+            + "\t-decrypt-file algo key file\n"
+            + "\t-crypt-stream algo key\t(values read from the standard input)\n"
+            + "\t-decrypt-stream algo key\t(values read from the standard input)\n"
+            + "\t-crypt-dir algo key directory [targetDirectory] [-threads n]\n"
+            + "\t-decrypt-dir algo key directory [targetDirectory] [-threads n]";
+
+    static final String ENCRYPTED_EXTENSION = ".enc";
+
+    private final InputStream in;
+    private final PrintStream out;
+    private final PrintStream err;
+
+    EncryptCommandLine(InputStream in, PrintStream out, PrintStream err) {
+        this.in = in;
+        this.out = out;
+        this.err = err;
+    }
+
+    /**
+     * @param args
+     * Command and its parameters
+     * @return
+     * Number of errors
+     * @throws GeneralSecurityException
+     * The exception is thrown when the algorithm or key is incorrect
+     * @throws IOException
+     * The exception is thrown when the values cannot be read or written
+     */
+    int run(String[] args) throws GeneralSecurityException, IOException {
+        if (args.length == 0) {
+            out.println(USAGE);
+            return 0;
+        }
+
+        String cmd = args[0];
+        switch (cmd) {
+            case "-genKey":
+                checkArguments(args, 2);
+                out.println(Base64.getEncoder().encodeToString(Encrypt.genKey(Integer.parseInt(args[1]))));
+                return 0;
+            case "-crypt":
+                return values(args, Cipher.ENCRYPT_MODE);
+            case "-decrypt":
+                return values(args, Cipher.DECRYPT_MODE);
+            case "-crypt-file":
+                return file(args, Cipher.ENCRYPT_MODE);
+            case "-decrypt-file":
+                return file(args, Cipher.DECRYPT_MODE);
+            case "-crypt-stream":
+                return stream(args, Cipher.ENCRYPT_MODE);
+            case "-decrypt-stream":
+                return stream(args, Cipher.DECRYPT_MODE);
+            case "-crypt-dir":
+                return directory(args, Cipher.ENCRYPT_MODE);
+            case "-decrypt-dir":
+                return directory(args, Cipher.DECRYPT_MODE);
+            default:
+                err.println("Unknown command " + cmd);
+                err.println(USAGE);
+                return 1;
+        }
+    }
+
+    private int values(String[] args, int mode) throws GeneralSecurityException {
+        checkArguments(args, 3);
+
+        int errors = 0;
+        try (ValueCipher cipher = new ValueCipher(mode, args[1], args[2])) {
+            for (int i = 3; i < args.length; i++) {
+                String data = args[i];
+                try {
+                    out.println(data + " -> \"" + cipher.apply(data) + "\"");
+                } catch (GeneralSecurityException | IllegalArgumentException ex) {
+                    err.println(data + ": " + ex.getMessage());
+                    errors++;
+                }
+            }
+        }
+
+        return errors;
+    }
+
+    private int file(String[] args, int mode) throws GeneralSecurityException, IOException {
+        checkArguments(args, 4);
+
+        try (BufferedReader reader = Files.newBufferedReader(Paths.get(args[3]))) {
+            return lines(reader, mode, args[1], args[2]);
+        }
+    }
+
+    private int stream(String[] args, int mode) throws GeneralSecurityException, IOException {
+        checkArguments(args, 3);
+
+        return lines(new BufferedReader(new InputStreamReader(in)), mode, args[1], args[2]);
+    }
+
+    /**
+     * Writes the result of each line as it goes. The output is flushed when no more input is immediately available,
+     * so that a producer waiting for the results is not blocked.
+     */
+    private int lines(BufferedReader reader, int mode, String algo, String keyBase64) throws GeneralSecurityException, IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out), 64 * 1024);
+
+        int errors = 0;
+        try (ValueCipher cipher = new ValueCipher(mode, algo, keyBase64)) {
+            int lineNumber = 0;
+            for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+                lineNumber++;
+                try {
+                    writer.write(cipher.apply(line));
+                } catch (GeneralSecurityException | IllegalArgumentException ex) {
+                    err.println("line " + lineNumber + ": " + ex.getMessage());
+                    errors++;
+                }
+                writer.write(System.lineSeparator());
+
+                if (!reader.ready()) {
+                    writer.flush();
+                }
+            }
+        } finally {
+            writer.flush();
+        }
+
+        return errors;
+    }
+
+    /**
+     * Encrypts the files of a directory tree, or decrypts its ".enc" files, on a bounded pool of threads. The output
+     * files are written next to the input files, or in the same relative path of the target directory. The encrypted
+     * files get the ".enc" extension, which is removed by the decryption.
+     */
+    private int directory(String[] args, int mode) throws IOException, GeneralSecurityException {
+        checkArguments(args, 4);
+
+        String algo = args[1];
+        byte[] key = Base64.getDecoder().decode(args[2]);
+        Path source = Paths.get(args[3]);
+        Path target = null;
+        int threads = Runtime.getRuntime().availableProcessors();
+        for (int i = 4; i < args.length; i++) {
+            if ("-threads".equals(args[i]) && i + 1 < args.length) {
+                threads = Integer.parseInt(args[++i]);
+            } else {
+                target = Paths.get(args[i]);
+            }
+        }
+
+        // the key and the algorithm are checked once, before processing the files
+        CipherPool.acquire(mode, algo, key).release();
+
+        List<Path> files;
+        try (Stream<Path> paths = Files.walk(source)) {
+            boolean encryption = mode == Cipher.ENCRYPT_MODE;
+            files = paths.filter(Files::isRegularFile)
+                    .filter(path -> path.getFileName().toString().endsWith(ENCRYPTED_EXTENSION) != encryption)
+                    .collect(Collectors.toList());
+        }
+
+        AtomicLong bytes = new AtomicLong();
+        AtomicInteger errors = new AtomicInteger();
+        long start = System.nanoTime();
+
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(threads, files.size())));
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (Path file : files) {
+                Path output = outputPath(source, target, file, mode);
+                futures.add(executor.submit(() -> {
+                    try {
+                        Files.createDirectories(output.toAbsolutePath().getParent());
+                        Encrypt.cipher(file, output, mode, algo, key);
+                        bytes.addAndGet(Files.size(file));
+                    } catch (IOException | GeneralSecurityException | RuntimeException ex) {
+                        err.println(file + ": " + ex);
+                        errors.incrementAndGet();
+                    }
+                }));
+            }
+
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (ExecutionException ex) {
+            throw new EncryptException(ex.getCause());
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new EncryptException(ex);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        double seconds = Math.max(System.nanoTime() - start, 1) / 1e9;
+        out.println(String.format(Locale.ROOT, "%d files, %d bytes in %.3f s (%.1f MB/s)%s",
+                files.size() - errors.get(), bytes.get(), seconds, bytes.get() / (1024.0 * 1024.0) / seconds,
+                errors.get() > 0 ? ", " + errors.get() + " errors" : ""));
+
+        return errors.get();
+    }
+
+    private static Path outputPath(Path source, Path target, Path file, int mode) {
+        Path output = target != null ? target.resolve(source.relativize(file).toString()) : file;
+        String name = output.getFileName().toString();
+        name = mode == Cipher.ENCRYPT_MODE ? name + ENCRYPTED_EXTENSION : name.substring(0, name.length() - ENCRYPTED_EXTENSION.length());
+
+        return output.resolveSibling(name);
+    }
+
+    private static void checkArguments(String[] args, int count) {
+        if (args.length < count) {
+            throw new IllegalArgumentException("Missing parameters for " + args[0] + "\n" + USAGE);
+        }
+    }
+
+    /**
+     * Cipher initialized once, and released to the pool at the end of the command.
+     */
+    private static final class ValueCipher implements AutoCloseable {
+        private final int mode;
+        private final String algo;
+        private final byte[] key;
+        private CipherPool.PooledCipher pooledCipher;
+
+        private ValueCipher(int mode, String algo, String keyBase64) throws GeneralSecurityException {
+            this.mode = mode;
+            this.algo = algo;
+            this.key = Base64.getDecoder().decode(keyBase64);
+            this.pooledCipher = CipherPool.acquire(mode, algo, key);
+        }
+
+        private String apply(String value) throws GeneralSecurityException {
+            Cipher cipher = pooledCipher.cipher();
+            try {
+                if (mode == Cipher.ENCRYPT_MODE) {
+                    return Base64.getEncoder().encodeToString(cipher.doFinal(value.getBytes()));
+                }
+
+                return new String(cipher.doFinal(Base64.getDecoder().decode(value.trim())));
+            } catch (GeneralSecurityException ex) {
+                // the state of a failed cipher is unspecified, it is not reused
+                pooledCipher = CipherPool.acquire(mode, algo, key);
+                throw ex;
+            }
+        }
+
+        @Override
+        public void close() {
+            pooledCipher.release();
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package fr.devlogic.encrypt.util;
+
+import javax.crypto.BadPaddingException;
+import javax.crypto.Cipher;
+import javax.crypto.IllegalBlockSizeException;
+import javax.crypto.ShortBufferException;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Input stream encrypting or decrypting the wrapped stream.
+ * <p>
+ * The data is read by chunks of 8 KiB and ciphered into a preallocated buffer, which serves both the single byte
+ * and the bulk reads.
+ */
+final class EncryptInputStream extends InputStream {
+
+    private static final int BUFFER_SIZE = 8192;
+
+    private final InputStream is;
+    private final CipherPool.PooledCipher pooledCipher;
+    private final Cipher cipher;
+
+    private final byte[] readBuffer = new byte[BUFFER_SIZE];
+    private byte[] writeBuffer;
+    private int writeBufferIndex = 0;
+    private int writeBufferLength = 0;
+    private boolean eof = false;
+    private boolean closed = false;
+
+    EncryptInputStream(InputStream is, CipherPool.PooledCipher pooledCipher) {
+        this.is = is;
+        this.pooledCipher = pooledCipher;
+        this.cipher = pooledCipher.cipher();
+        this.writeBuffer = new byte[cipher.getOutputSize(BUFFER_SIZE)];
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (!fill()) {
+            return -1;
+        }
+
+        return writeBuffer[writeBufferIndex++] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (off < 0 || len < 0 || len > b.length - off) {
+            throw new IndexOutOfBoundsException();
+        }
+
+        if (len == 0) {
+            return 0;
+        }
+
+        if (!fill()) {
+            return -1;
+        }
+
+        int length = Math.min(len, writeBufferLength - writeBufferIndex);
+        System.arraycopy(writeBuffer, writeBufferIndex, b, off, length);
+        writeBufferIndex += length;
+
+        return length;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        long skipped = 0;
+        while (skipped < n && fill()) {
+            int length = (int) Math.min(n - skipped, writeBufferLength - writeBufferIndex);
+            writeBufferIndex += length;
+            skipped += length;
+        }
+
+        return skipped;
+    }
+
+    /**
+     * @return
+     * Number of bytes already ciphered, which can be read without blocking
+     */
+    @Override
+    public int available() throws IOException {
+        ensureOpen();
+        return writeBufferLength - writeBufferIndex;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (!closed) {
+            closed = true;
+            is.close();
+        }
+    }
+
+    /**
+     * Ciphers the next chunk when the buffer has been consumed.
+     *
+     * @return
+     * false at the end of the stream
+     */
+    private boolean fill() throws IOException {
+        ensureOpen();
+
+        while (writeBufferIndex == writeBufferLength) {
+            if (eof) {
+                return false;
+            }
+
+            writeBufferIndex = 0;
+
+            int readLength = is.read(readBuffer);
+            try {
+                if (readLength < 0) {
+                    ensureCapacity(cipher.getOutputSize(0));
+                    writeBufferLength = cipher.doFinal(writeBuffer, 0);
+                    eof = true;
+                    pooledCipher.release();
+                } else {
+                    ensureCapacity(cipher.getOutputSize(readLength));
+                    writeBufferLength = cipher.update(readBuffer, 0, readLength, writeBuffer, 0);
+                }
+            } catch (ShortBufferException | IllegalBlockSizeException | BadPaddingException e) {
+                throw new EncryptException(e);
+            }
+        }
+
+        return true;
+    }
+
+    private void ensureCapacity(int size) {
+        if (writeBuffer.length < size) {
+            writeBuffer = new byte[size];
+        }
+    }
+
+    private void ensureOpen() throws IOException {
+        if (closed) {
+            throw new IOException("Stream closed");
+        }
+    }
+}
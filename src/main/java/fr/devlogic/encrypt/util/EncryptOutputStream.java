@@ -0,0 +1,125 @@
+package fr.devlogic.encrypt.util;
+
+import javax.crypto.Cipher;
+import javax.crypto.ShortBufferException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.security.GeneralSecurityException;
+
+/**
+ * Output stream encrypting or decrypting the data before writing it to the wrapped stream.
+ * <p>
+ * The single bytes are gathered in an 8 KiB buffer, the arrays are ciphered by slices without copy. The ciphered
+ * data is written from a reused buffer. Closing the stream writes the final block and closes the wrapped stream.
+ */
+final class EncryptOutputStream extends OutputStream {
+
+    private static final int BUFFER_SIZE = 8192;
+
+    private final OutputStream os;
+    private final CipherPool.PooledCipher pooledCipher;
+    private final Cipher cipher;
+
+    private final byte[] readBuffer = new byte[BUFFER_SIZE];
+    private int readBufferIndex = 0;
+    private byte[] writeBuffer;
+    private boolean closed = false;
+
+    EncryptOutputStream(OutputStream os, CipherPool.PooledCipher pooledCipher) {
+        this.os = os;
+        this.pooledCipher = pooledCipher;
+        this.cipher = pooledCipher.cipher();
+        this.writeBuffer = new byte[cipher.getOutputSize(BUFFER_SIZE)];
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        ensureOpen();
+
+        readBuffer[readBufferIndex++] = (byte) b;
+        if (readBufferIndex == readBuffer.length) {
+            flushReadBuffer();
+        }
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        if (off < 0 || len < 0 || len > b.length - off) {
+            throw new IndexOutOfBoundsException();
+        }
+
+        ensureOpen();
+
+        if (len < readBuffer.length - readBufferIndex) {
+            System.arraycopy(b, off, readBuffer, readBufferIndex, len);
+            readBufferIndex += len;
+            return;
+        }
+
+        flushReadBuffer();
+        for (int end = off + len; off < end; off += BUFFER_SIZE) {
+            update(b, off, Math.min(BUFFER_SIZE, end - off));
+        }
+    }
+
+    /**
+     * Writes the whole cipher blocks of the data written so far, then flushes the wrapped stream. The last partial
+     * block is kept by the cipher until more data is written or the stream is closed.
+     */
+    @Override
+    public void flush() throws IOException {
+        ensureOpen();
+
+        flushReadBuffer();
+        os.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+
+        try {
+            ensureCapacity(cipher.getOutputSize(readBufferIndex));
+            int length = cipher.doFinal(readBuffer, 0, readBufferIndex, writeBuffer, 0);
+            readBufferIndex = 0;
+            pooledCipher.release();
+            os.write(writeBuffer, 0, length);
+        } catch (GeneralSecurityException ex) {
+            throw new EncryptException(ex);
+        } finally {
+            os.close();
+        }
+    }
+
+    private void flushReadBuffer() throws IOException {
+        if (readBufferIndex > 0) {
+            update(readBuffer, 0, readBufferIndex);
+            readBufferIndex = 0;
+        }
+    }
+
+    private void update(byte[] data, int off, int len) throws IOException {
+        ensureCapacity(cipher.getOutputSize(len));
+        try {
+            int length = cipher.update(data, off, len, writeBuffer, 0);
+            os.write(writeBuffer, 0, length);
+        } catch (ShortBufferException ex) {
+            throw new EncryptException(ex);
+        }
+    }
+
+    private void ensureCapacity(int size) {
+        if (writeBuffer.length < size) {
+            writeBuffer = new byte[size];
+        }
+    }
+
+    private void ensureOpen() throws IOException {
+        if (closed) {
+            throw new IOException("Stream closed");
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package fr.devlogic.encrypt.util;
+
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.util.Arrays;
+
+/**
+ * Per thread scratch buffers of the decryptions into caller buffers: decoded base 64 data, decrypted data and
+ * characters. A buffer larger than {@value #MAX_RETAINED_SIZE} is not retained by the thread.
+ * <p>
+ * The decrypted data and the characters are wiped by the callers once copied.
+ */
+final class ScratchBuffers {
+
+    private static final int MAX_RETAINED_SIZE = 64 * 1024;
+    private static final int INITIAL_SIZE = 256;
+
+    private static final ThreadLocal<ScratchBuffers> buffers = ThreadLocal.withInitial(ScratchBuffers::new);
+
+    // base 64 alphabet, -1 for the other characters
+    private static final byte[] BASE64 = new byte[128];
+
+    static {
+        Arrays.fill(BASE64, (byte) -1);
+        String alphabet = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/";
+        for (int i = 0; i < alphabet.length(); i++) {
+            BASE64[alphabet.charAt(i)] = (byte) i;
+        }
+    }
+
+    private byte[] encrypted = new byte[INITIAL_SIZE];
+    private byte[] decrypted = new byte[INITIAL_SIZE];
+    private char[] chars = new char[INITIAL_SIZE];
+    private final CharsetDecoder charsetDecoder = Charset.defaultCharset().newDecoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+
+    private ScratchBuffers() {
+    }
+
+    static ScratchBuffers get() {
+        return buffers.get();
+    }
+
+    byte[] encrypted(int size) {
+        if (size <= encrypted.length) {
+            return encrypted;
+        }
+
+        byte[] buffer = new byte[size];
+        if (size <= MAX_RETAINED_SIZE) {
+            encrypted = buffer;
+        }
+        return buffer;
+    }
+
+    byte[] decrypted(int size) {
+        if (size <= decrypted.length) {
+            return decrypted;
+        }
+
+        byte[] buffer = new byte[size];
+        if (size <= MAX_RETAINED_SIZE) {
+            decrypted = buffer;
+        }
+        return buffer;
+    }
+
+    char[] chars(int size) {
+        if (size <= chars.length) {
+            return chars;
+        }
+
+        char[] buffer = new char[size];
+        if (size <= MAX_RETAINED_SIZE) {
+            chars = buffer;
+        }
+        return buffer;
+    }
+
+    /**
+     * @return
+     * Decoder of the default charset, the one of {@link String#String(byte[])}, reset
+     */
+    CharsetDecoder charsetDecoder() {
+        return charsetDecoder.reset();
+    }
+
+    /**
+     * @param data
+     * Base 64 data
+     * @return
+     * Maximum size of the decoded data
+     */
+    static int decodedSize(CharSequence data) {
+        return (int) (data.length() * 3L / 4);
+    }
+
+    /**
+     * Base 64 decoding without intermediate copy, with the rules of {@link java.util.Base64#getDecoder()}: the
+     * padding is optional, the characters out of the alphabet are rejected.
+     *
+     * @param data
+     * Base 64 data
+     * @param output
+     * Decoded data, its size is at least {@link #decodedSize(CharSequence)}
+     * @return
+     * Size of the decoded data
+     * @throws IllegalArgumentException
+     * The exception is thrown when the data is not base 64 coded
+     */
+    static int decodeBase64(CharSequence data, byte[] output) {
+        int end = data.length();
+        if (end > 0 && data.charAt(end - 1) == '=') {
+            end--;
+            if (end > 0 && data.charAt(end - 1) == '=') {
+                end--;
+            }
+        }
+
+        if ((end % 4 == 1) || (end != data.length() && data.length() % 4 != 0)) {
+            throw new IllegalArgumentException("Invalid base 64 length " + data.length());
+        }
+
+        int bits = 0;
+        int numBits = 0;
+        int length = 0;
+        for (int i = 0; i < end; i++) {
+            char c = data.charAt(i);
+            int value = c < BASE64.length ? BASE64[c] : -1;
+            if (value < 0) {
+                throw new IllegalArgumentException("Illegal base 64 character " + Integer.toHexString(c));
+            }
+
+            bits = ((bits << 6) | value) & 0xFFFF;
+            numBits += 6;
+            if (numBits >= 8) {
+                numBits -= 8;
+                output[length++] = (byte) (bits >> numBits);
+            }
+        }
+
+        return length;
+    }
+}
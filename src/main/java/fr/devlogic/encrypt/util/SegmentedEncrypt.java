@@ -0,0 +1,329 @@
+package fr.devlogic.encrypt.util;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+/**
+ * Authenticated file encryption by independent segments, processed in parallel.
+ * <p>
+ * The plaintext is split into fixed-size segments, each one sealed with AES/GCM. The nonce of a segment is made of
+ * a random file prefix and of the segment number, the header is authenticated with each segment: segments cannot be
+ * reordered, truncated or moved to another file. The file format is:
+ * <pre>
+ *  magic "CPSG" (4 bytes) | version (1 byte) | segment size (int) | plaintext size (long) | nonce prefix (8 bytes)
+ *  | segment count (int) | segment index: encrypted size of each segment (int) | encrypted segments
+ * </pre>
+ * The segments are encrypted and decrypted on a {@link ForkJoinPool}, by positional reads and writes.
+ */
+public final class SegmentedEncrypt {
+
+    /**
+     * Default segment size: 1 MiB
+     */
+    public static final int DEFAULT_SEGMENT_SIZE = 1024 * 1024;
+
+    private static final byte[] MAGIC = {'C', 'P', 'S', 'G'};
+    private static final byte VERSION = 1;
+    private static final int HEADER_SIZE = MAGIC.length + 1 + Integer.BYTES + Long.BYTES + 8 + Integer.BYTES;
+    private static final int NONCE_PREFIX_SIZE = 8;
+    private static final int TAG_SIZE = 16;
+    private static final String ALGO = "AES";
+    private static final String TRANSFORMATION = "AES/GCM/NoPadding";
+
+    private static final SecureRandom random = new SecureRandom();
+    private static final ThreadLocal<Cipher> ciphers = ThreadLocal.withInitial(() -> {
+        try {
+            return Cipher.getInstance(TRANSFORMATION);
+        } catch (GeneralSecurityException ex) {
+            throw new EncryptException(ex);
+        }
+    });
+
+    private SegmentedEncrypt() {
+    }
+
+    /**
+     * File encryption with the default segment size, on the common pool.
+     *
+     * @param input
+     * File to encrypt
+     * @param output
+     * Encrypted file, created or replaced
+     * @param keyBase64
+     * Base 64 coded AES key
+     * @return
+     * Size of the encrypted file
+     * @throws GeneralSecurityException
+     * The exception is thrown when the key is incorrect
+     * @throws IOException
+     * The exception is thrown when a file cannot be read or written
+     */
+    public static long encrypt(Path input, Path output, String keyBase64) throws GeneralSecurityException, IOException {
+        return encrypt(input, output, Base64.getDecoder().decode(keyBase64), DEFAULT_SEGMENT_SIZE, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * File encryption.
+     *
+     * @param input
+     * File to encrypt
+     * @param output
+     * Encrypted file, created or replaced
+     * @param key
+     * AES key (128, 192 or 256 bits)
+     * @param segmentSize
+     * Size of the plaintext segments
+     * @param pool
+     * Pool encrypting the segments
+     * @return
+     * Size of the encrypted file
+     * @throws GeneralSecurityException
+     * The exception is thrown when the key is incorrect
+     * @throws IOException
+     * The exception is thrown when a file cannot be read or written
+     */
+    public static long encrypt(Path input, Path output, byte[] key, int segmentSize, ForkJoinPool pool) throws GeneralSecurityException, IOException {
+        if (segmentSize <= 0) {
+            throw new IllegalArgumentException("segmentSize must be positive: " + segmentSize);
+        }
+
+        SecretKeySpec secretKey = new SecretKeySpec(key, ALGO);
+
+        try (FileChannel in = FileChannel.open(input, StandardOpenOption.READ);
+             FileChannel out = FileChannel.open(output, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+
+            long size = in.size();
+            long segmentCount = Math.max(1, (size + segmentSize - 1) / segmentSize);
+            if (segmentCount > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("Too many segments, increase the segment size: " + segmentCount);
+            }
+
+            byte[] noncePrefix = new byte[NONCE_PREFIX_SIZE];
+            random.nextBytes(noncePrefix);
+
+            Header header = new Header(segmentSize, size, noncePrefix, (int) segmentCount);
+            ByteBuffer headerBuffer = ByteBuffer.allocate(HEADER_SIZE + Integer.BYTES * header.segmentCount);
+            headerBuffer.put(header.bytes);
+            for (int i = 0; i < header.segmentCount; i++) {
+                headerBuffer.putInt(header.plaintextSize(i) + TAG_SIZE);
+            }
+            headerBuffer.flip();
+            writeFully(out, headerBuffer, 0);
+
+            long dataOffset = headerBuffer.capacity();
+            run(pool, header.segmentCount, i -> {
+                int plaintextSize = header.plaintextSize(i);
+                ByteBuffer plaintext = readFully(in, plaintextSize, (long) i * segmentSize);
+
+                Cipher cipher = ciphers.get();
+                cipher.init(Cipher.ENCRYPT_MODE, secretKey, header.parameters(i));
+                cipher.updateAAD(header.bytes);
+                ByteBuffer encrypted = ByteBuffer.allocate(plaintextSize + TAG_SIZE);
+                cipher.doFinal(plaintext, encrypted);
+                encrypted.flip();
+
+                writeFully(out, encrypted, dataOffset + (long) i * (segmentSize + TAG_SIZE));
+            });
+
+            return dataOffset + size + (long) header.segmentCount * TAG_SIZE;
+        }
+    }
+
+    /**
+     * File decryption on the common pool.
+     *
+     * @param input
+     * Encrypted file
+     * @param output
+     * Decrypted file, created or replaced
+     * @param keyBase64
+     * Base 64 coded AES key
+     * @return
+     * Size of the decrypted file
+     * @throws GeneralSecurityException
+     * The exception is thrown when the key is incorrect or the file is altered
+     * @throws IOException
+     * The exception is thrown when a file cannot be read or written, or is not a segmented file
+     */
+    public static long decrypt(Path input, Path output, String keyBase64) throws GeneralSecurityException, IOException {
+        return decrypt(input, output, Base64.getDecoder().decode(keyBase64), ForkJoinPool.commonPool());
+    }
+
+    /**
+     * File decryption.
+     *
+     * @param input
+     * Encrypted file
+     * @param output
+     * Decrypted file, created or replaced
+     * @param key
+     * AES key (128, 192 or 256 bits)
+     * @param pool
+     * Pool decrypting the segments
+     * @return
+     * Size of the decrypted file
+     * @throws GeneralSecurityException
+     * The exception is thrown when the key is incorrect or the file is altered
+     * @throws IOException
+     * The exception is thrown when a file cannot be read or written, or is not a segmented file
+     */
+    public static long decrypt(Path input, Path output, byte[] key, ForkJoinPool pool) throws GeneralSecurityException, IOException {
+        SecretKeySpec secretKey = new SecretKeySpec(key, ALGO);
+
+        try (FileChannel in = FileChannel.open(input, StandardOpenOption.READ);
+             FileChannel out = FileChannel.open(output, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+
+            Header header = Header.read(readFully(in, HEADER_SIZE, 0));
+            ByteBuffer index = readFully(in, Integer.BYTES * header.segmentCount, HEADER_SIZE);
+
+            long[] offsets = new long[header.segmentCount];
+            long offset = HEADER_SIZE + (long) Integer.BYTES * header.segmentCount;
+            for (int i = 0; i < header.segmentCount; i++) {
+                int encryptedSize = index.getInt();
+                if (encryptedSize != header.plaintextSize(i) + TAG_SIZE) {
+                    throw new IOException("Invalid size of segment " + i + ": " + encryptedSize);
+                }
+                offsets[i] = offset;
+                offset += encryptedSize;
+            }
+
+            if (offset != in.size()) {
+                throw new IOException("Invalid file size " + in.size() + ", expected " + offset);
+            }
+
+            run(pool, header.segmentCount, i -> {
+                ByteBuffer encrypted = readFully(in, header.plaintextSize(i) + TAG_SIZE, offsets[i]);
+
+                Cipher cipher = ciphers.get();
+                cipher.init(Cipher.DECRYPT_MODE, secretKey, header.parameters(i));
+                cipher.updateAAD(header.bytes);
+                ByteBuffer plaintext = ByteBuffer.allocate(header.plaintextSize(i));
+                cipher.doFinal(encrypted, plaintext);
+                plaintext.flip();
+
+                writeFully(out, plaintext, (long) i * header.segmentSize);
+            });
+
+            return header.plaintextSize;
+        }
+    }
+
+    private static void run(ForkJoinPool pool, int segmentCount, SegmentTask task) throws GeneralSecurityException, IOException {
+        try {
+            pool.submit(() -> IntStream.range(0, segmentCount).parallel().forEach(i -> {
+                try {
+                    task.run(i);
+                } catch (IOException ex) {
+                    throw new UncheckedIOException(ex);
+                } catch (GeneralSecurityException ex) {
+                    throw new EncryptException(ex);
+                }
+            })).get();
+        } catch (ExecutionException ex) {
+            // the fork/join framework may wrap again an exception thrown by another worker
+            for (Throwable cause = ex.getCause(); cause != null; cause = cause.getCause()) {
+                if (cause instanceof IOException) {
+                    throw (IOException) cause;
+                }
+                if (cause instanceof GeneralSecurityException) {
+                    throw (GeneralSecurityException) cause;
+                }
+            }
+            throw new EncryptException(ex.getCause());
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new EncryptException(ex);
+        }
+    }
+
+    private static ByteBuffer readFully(FileChannel channel, int size, long position) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new EOFException();
+            }
+        }
+        buffer.flip();
+
+        return buffer;
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer, position + buffer.position());
+        }
+    }
+
+    @FunctionalInterface
+    private interface SegmentTask {
+        void run(int segment) throws GeneralSecurityException, IOException;
+    }
+
+    private static final class Header {
+        private final int segmentSize;
+        private final long plaintextSize;
+        private final byte[] noncePrefix;
+        private final int segmentCount;
+        // fixed part of the header, authenticated with each segment
+        private final byte[] bytes;
+
+        private Header(int segmentSize, long plaintextSize, byte[] noncePrefix, int segmentCount) {
+            this.segmentSize = segmentSize;
+            this.plaintextSize = plaintextSize;
+            this.noncePrefix = noncePrefix;
+            this.segmentCount = segmentCount;
+            this.bytes = ByteBuffer.allocate(HEADER_SIZE)
+                    .put(MAGIC).put(VERSION).putInt(segmentSize).putLong(plaintextSize).put(noncePrefix).putInt(segmentCount)
+                    .array();
+        }
+
+        private static Header read(ByteBuffer buffer) throws IOException {
+            byte[] magic = new byte[MAGIC.length];
+            buffer.get(magic);
+            if (!Arrays.equals(magic, MAGIC)) {
+                throw new IOException("Not a segmented encrypted file");
+            }
+
+            byte version = buffer.get();
+            if (version != VERSION) {
+                throw new IOException("Unsupported version " + version);
+            }
+
+            int segmentSize = buffer.getInt();
+            long plaintextSize = buffer.getLong();
+            byte[] noncePrefix = new byte[NONCE_PREFIX_SIZE];
+            buffer.get(noncePrefix);
+            int segmentCount = buffer.getInt();
+
+            if (segmentSize <= 0 || plaintextSize < 0 || segmentCount != Math.max(1, (plaintextSize + segmentSize - 1) / segmentSize)) {
+                throw new IOException("Invalid header");
+            }
+
+            return new Header(segmentSize, plaintextSize, noncePrefix, segmentCount);
+        }
+
+        private int plaintextSize(int segment) {
+            return (int) Math.min(segmentSize, plaintextSize - (long) segment * segmentSize);
+        }
+
+        private GCMParameterSpec parameters(int segment) {
+            byte[] nonce = ByteBuffer.allocate(NONCE_PREFIX_SIZE + Integer.BYTES).put(noncePrefix).putInt(segment).array();
+            return new GCMParameterSpec(TAG_SIZE * 8, nonce);
+        }
+    }
+}
@@ -30,6 +30,16 @@ class AgentTest {
         Assertions.assertThat(metaAnnotation).contains(ProprieteChiffree.class);
     }
 
+    @Test
+    void onlyCandidatesAreRecorded() {
+        EncryptedPropertyAgent.getAllLoadedClasses(); // attach before loading the classes
+        new DomainConfiguration().setUser(Constantes.MOT_DE_PASSE);
+
+        Assertions.assertThat(EncryptedPropertyAgent.getAllLoadedClasses())
+                .contains(DomainConfiguration.class.getName())
+                .doesNotContain(Constantes.class.getName(), AgentTest.class.getName());
+    }
+
     @Test
     void pid() {
         System.out.println("pid");
@@ -0,0 +1,35 @@
+package fr.devlogic.encrypt.spring;
+
+import fr.devlogic.encrypt.spring.impl.EncryptedPropertyConfiguration;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.core.env.Environment;
+
+@SpringBootTest(classes = EncryptedPropertyConfiguration.class,
+        properties = {"encrypted-property.algo=" + Constantes.ALGO_CRYPTO, "encrypted-property.key=" + Constantes.CRYPTO_KEY,
+                "external.password=ENC(cXRmmH67QY9DxbHrlSrDhw==)", "external.user=username"})
+class DecryptingPropertySourceTest {
+
+    @Autowired
+    private Environment environment;
+
+    @Value("${external.password}")
+    private String password;
+
+    @Test
+    void encryptedValuesAreDecrypted() {
+        Assertions.assertThat(password).isEqualTo(Constantes.MOT_DE_PASSE);
+        Assertions.assertThat(environment.getProperty("external.password")).isEqualTo(Constantes.MOT_DE_PASSE);
+        Assertions.assertThat(Binder.get(environment).bind("external.password", String.class).get()).isEqualTo(Constantes.MOT_DE_PASSE);
+    }
+
+    @Test
+    void plainValuesAreUnchanged() {
+        Assertions.assertThat(environment.getProperty("external.user")).isEqualTo("username");
+        Assertions.assertThat(environment.getProperty("domain.password")).isEqualTo("cXRmmH67QY9DxbHrlSrDhw==");
+    }
+}
@@ -0,0 +1,49 @@
+package fr.devlogic.encrypt.spring;
+
+import fr.devlogic.encrypt.spring.impl.DecryptionCache;
+import fr.devlogic.encrypt.spring.impl.EncryptedPropertyConfiguration;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.ldap.LdapProperties;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.security.GeneralSecurityException;
+
+@ActiveProfiles("dev")
+@SpringBootTest(classes = {EncryptedPropertyConfiguration.class, DomainConfiguration.class, LdapProperties.class},
+        properties = "encrypted-property.cache.enabled=true")
+class DecryptionCacheTest {
+
+    @Autowired
+    private DomainConfiguration domainConfiguration;
+
+    @Autowired
+    private DecryptionCache decryptionCache;
+
+    @Test
+    void sharedValuesAreDecryptedOnce() {
+        Assertions.assertThat(domainConfiguration.getPassword()).isEqualTo(Constantes.MOT_DE_PASSE);
+        Assertions.assertThat(domainConfiguration.getPassword2()).isEqualTo(Constantes.MOT_DE_PASSE);
+        Assertions.assertThat(domainConfiguration.getPassword3()).isEqualTo(Constantes.MOT_DE_PASSE);
+
+        Assertions.assertThat(decryptionCache.getHits()).isGreaterThanOrEqualTo(2);
+        Assertions.assertThat(decryptionCache.size()).isZero(); // cleared after refresh
+    }
+
+    @Test
+    void leastRecentlyUsedValueIsEvicted() throws GeneralSecurityException {
+        DecryptionCache cache = new DecryptionCache(1, false);
+        String encrypted = "cXRmmH67QY9DxbHrlSrDhw==";
+
+        Assertions.assertThat(cache.decrypt(encrypted, Constantes.ALGO_CRYPTO, Constantes.CRYPTO_KEY)).isEqualTo(Constantes.MOT_DE_PASSE);
+        Assertions.assertThat(cache.decrypt(encrypted, Constantes.ALGO_CRYPTO, Constantes.CRYPTO_KEY)).isEqualTo(Constantes.MOT_DE_PASSE);
+        Assertions.assertThat(cache.decrypt("daami+dYrI4abo8SjqR57w==", Constantes.ALGO_CRYPTO, Constantes.CRYPTO_KEY)).isEqualTo("secret");
+        Assertions.assertThat(cache.decrypt(encrypted, Constantes.ALGO_CRYPTO, Constantes.CRYPTO_KEY)).isEqualTo(Constantes.MOT_DE_PASSE);
+
+        Assertions.assertThat(cache.getHits()).isEqualTo(1);
+        Assertions.assertThat(cache.getMisses()).isEqualTo(3);
+        Assertions.assertThat(cache.size()).isEqualTo(1);
+    }
+}
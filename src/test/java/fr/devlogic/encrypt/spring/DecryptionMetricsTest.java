@@ -0,0 +1,47 @@
+package fr.devlogic.encrypt.spring;
+
+import fr.devlogic.encrypt.spring.impl.EncryptedPropertyConfiguration;
+import fr.devlogic.encrypt.spring.impl.EncryptedPropertyEndpoint;
+import fr.devlogic.encrypt.spring.impl.EncryptedPropertyMonitoringConfiguration;
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.ldap.LdapProperties;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.Map;
+
+@ActiveProfiles("dev")
+@SpringBootTest(classes = {EncryptedPropertyConfiguration.class, EncryptedPropertyMonitoringConfiguration.class,
+        DomainConfiguration.class, LdapProperties.class, SimpleMeterRegistry.class})
+class DecryptionMetricsTest {
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private EncryptedPropertyEndpoint endpoint;
+
+    @Test
+    void decryptionsAreMeasured() {
+        FunctionTimer timer = meterRegistry.get("encrypted.property.decryption").tag("algo", Constantes.ALGO_CRYPTO).functionTimer();
+        Assertions.assertThat(timer.count()).isGreaterThanOrEqualTo(3);
+        Assertions.assertThat(meterRegistry.get("encrypted.property.class.scan").functionTimer().count()).isPositive();
+        Assertions.assertThat(meterRegistry.find("encrypted.property.agent.attach").timeGauge()).isNotNull();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void endpointSummarizesWithoutValues() {
+        Map<String, Object> summary = endpoint.summary();
+
+        Map<String, Map<String, Object>> decryptions = (Map<String, Map<String, Object>>) summary.get("decryptions");
+        Assertions.assertThat(decryptions).containsKey(Constantes.ALGO_CRYPTO);
+        Assertions.assertThat((Long) decryptions.get(Constantes.ALGO_CRYPTO).get("count")).isGreaterThanOrEqualTo(3);
+        Assertions.assertThat(summary.toString()).doesNotContain(Constantes.MOT_DE_PASSE).doesNotContain(Constantes.CRYPTO_KEY);
+    }
+}
@@ -0,0 +1,57 @@
+package fr.devlogic.encrypt.spring;
+
+import fr.devlogic.encrypt.spring.impl.EncryptedPropertyConfiguration;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.aop.support.AopUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.ldap.LdapProperties;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.test.context.ActiveProfiles;
+
+@ActiveProfiles("dev")
+@SpringBootTest(classes = {EncryptedPropertyConfiguration.class, DomainConfiguration.class, LdapProperties.class, DeferredDecryptionTest.LdapClient.class,
+        ThreadPoolTaskExecutor.class},
+        properties = {"encrypted-property.decryption.mode=deferred", "encrypted-property.decryption.parallelism=2"})
+class DeferredDecryptionTest {
+
+    @Autowired
+    private DomainConfiguration domainConfiguration;
+
+    @Autowired
+    private LdapProperties ldapProperties;
+
+    @Autowired
+    private LdapClient ldapClient;
+
+    @Autowired
+    private ThreadPoolTaskExecutor taskExecutor;
+
+    @Test
+    void decryptedBeforeRefreshEnd() {
+        Assertions.assertThat(domainConfiguration.getPassword()).isEqualTo(Constantes.MOT_DE_PASSE);
+        Assertions.assertThat(domainConfiguration.getPassword2()).isEqualTo(Constantes.MOT_DE_PASSE);
+        Assertions.assertThat(domainConfiguration.getUnencryptedPassword()).isEqualTo("123456");
+        Assertions.assertThat(ldapProperties.getPassword()).isEqualTo("secret");
+    }
+
+    @Test
+    void dependentBeanWaitsForDecryption() {
+        Assertions.assertThat(AopUtils.isCglibProxy(ldapProperties)).isTrue();
+        Assertions.assertThat(ldapClient.password).isEqualTo("secret");
+    }
+
+    @Test
+    void batchRunsOnTheContextExecutor() {
+        Assertions.assertThat(taskExecutor.getThreadPoolExecutor().getCompletedTaskCount()).isPositive();
+    }
+
+    static class LdapClient {
+        private final String password;
+
+        LdapClient(LdapProperties ldapProperties) {
+            this.password = ldapProperties.getPassword(); // read while the singletons are instantiated
+        }
+    }
+}
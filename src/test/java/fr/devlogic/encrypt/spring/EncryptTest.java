@@ -27,7 +27,6 @@ class EncryptTest {
 
         String algo = "AES";
 
-
         int length = r.nextInt(100 * 1_024);
         if (length<1) {
            return;
@@ -0,0 +1,88 @@
+package fr.devlogic.encrypt.spring;
+
+import fr.devlogic.encrypt.spring.impl.EncryptedPropertyConfiguration;
+import fr.devlogic.encrypt.spring.impl.KeyStoreKeyRegistry;
+import fr.devlogic.encrypt.util.Encrypt;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.io.FileSystemResource;
+
+import javax.crypto.SecretKey;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.KeyStore;
+import java.util.Base64;
+
+class KeyRegistryTest {
+
+    private static final String ENCRYPTED_PASSWORD = "cXRmmH67QY9DxbHrlSrDhw==";
+    private static final char[] PASSWORD = "changeit".toCharArray();
+
+    @TempDir
+    static Path directory;
+
+    private static Path keyStoreFile;
+
+    @BeforeAll
+    static void createKeyStore() throws Exception {
+        KeyStore keyStore = KeyStore.getInstance("PKCS12");
+        keyStore.load(null, PASSWORD);
+        SecretKey key = new SecretKeySpec(Base64.getDecoder().decode(Constantes.CRYPTO_KEY), Constantes.ALGO_CRYPTO);
+        keyStore.setEntry("db", new KeyStore.SecretKeyEntry(key), new KeyStore.PasswordProtection(PASSWORD));
+
+        keyStoreFile = directory.resolve("keys.p12");
+        try (OutputStream outputStream = Files.newOutputStream(keyStoreFile)) {
+            keyStore.store(outputStream, PASSWORD);
+        }
+    }
+
+    @Test
+    void keysAreLoadedOnce() throws Exception {
+        KeyStoreKeyRegistry registry = KeyStoreKeyRegistry.load(new FileSystemResource(keyStoreFile), null, PASSWORD.clone(), null);
+
+        Assertions.assertThat(registry.size()).isEqualTo(1);
+        Assertions.assertThat(registry.getKey("unknown")).isNull();
+        SecretKey key = registry.getKey("DB");
+        Assertions.assertThat(key).isNotNull();
+        Assertions.assertThat(Encrypt.decrypt(ENCRYPTED_PASSWORD, Constantes.ALGO_CRYPTO, key)).isEqualTo(Constantes.MOT_DE_PASSE);
+    }
+
+    @Test
+    void keyRefIsResolvedFromTheKeyStore() {
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(EncryptedPropertyConfiguration.class, KeyRefConfiguration.class)
+                .web(WebApplicationType.NONE)
+                .properties("encrypted-property.keystore.location=" + keyStoreFile.toUri(),
+                        "encrypted-property.keystore.password=changeit",
+                        "keyref.password=" + ENCRYPTED_PASSWORD)
+                .run()) {
+
+            Assertions.assertThat(context.getBean(KeyRefConfiguration.class).getPassword()).isEqualTo(Constantes.MOT_DE_PASSE);
+        }
+    }
+
+    @ConfigurationProperties("keyref")
+    @Configuration
+    @EnableConfigurationProperties
+    public static class KeyRefConfiguration {
+        private String password;
+
+        public String getPassword() {
+            return password;
+        }
+
+        @EncryptedProperty(algo = Constantes.ALGO_CRYPTO, keyRef = "db")
+        public void setPassword(String password) {
+            this.password = password;
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package fr.devlogic.encrypt.spring;
+
+import fr.devlogic.encrypt.spring.impl.EncryptedPropertyConfiguration;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.aop.framework.Advised;
+import org.springframework.aop.support.AopUtils;
+import org.springframework.beans.factory.config.AutowireCapableBeanFactory;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.autoconfigure.ldap.LdapProperties;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+class LazyDecryptionTest {
+
+    private static final String ENCRYPTED_PASSWORD = "cXRmmH67QY9DxbHrlSrDhw==";
+
+    @Test
+    void propertyIsDecryptedOnFirstAccess() throws Exception {
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(EncryptedPropertyConfiguration.class, LazyConfiguration.class)
+                .web(WebApplicationType.NONE)
+                .properties("lazy.password=" + ENCRYPTED_PASSWORD, "lazy.token=" + ENCRYPTED_PASSWORD)
+                .run()) {
+
+            LazyConfiguration lazyConfiguration = context.getBean(LazyConfiguration.class);
+            Assertions.assertThat(AopUtils.isCglibProxy(lazyConfiguration)).isTrue();
+
+            LazyConfiguration target = (LazyConfiguration) ((Advised) lazyConfiguration).getTargetSource().getTarget();
+            Assertions.assertThat(target.getToken()).isEqualTo(Constantes.MOT_DE_PASSE);
+            Assertions.assertThat(target.getPassword()).isEqualTo(ENCRYPTED_PASSWORD);
+
+            Assertions.assertThat(IntStream.range(0, 8)
+                    .mapToObj(i -> CompletableFuture.supplyAsync(lazyConfiguration::getPassword))
+                    .collect(Collectors.toList()))
+                    .allSatisfy(password -> Assertions.assertThat(password.join()).isEqualTo(Constantes.MOT_DE_PASSE));
+            Assertions.assertThat(target.getPassword()).isEqualTo(Constantes.MOT_DE_PASSE);
+        }
+    }
+
+    @Test
+    void newValueIsDecryptedAgain() throws Exception {
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(EncryptedPropertyConfiguration.class, LazyConfiguration.class)
+                .web(WebApplicationType.NONE)
+                .properties("lazy.password=" + ENCRYPTED_PASSWORD, "lazy.token=" + ENCRYPTED_PASSWORD)
+                .run()) {
+
+            LazyConfiguration lazyConfiguration = context.getBean(LazyConfiguration.class);
+            Assertions.assertThat(lazyConfiguration.getPassword()).isEqualTo(Constantes.MOT_DE_PASSE);
+
+            // set through the proxy
+            lazyConfiguration.setPassword(ENCRYPTED_PASSWORD);
+            Assertions.assertThat(lazyConfiguration.getPassword()).isEqualTo(Constantes.MOT_DE_PASSE);
+
+            // bound again on the target, as a rebind of the configuration properties does
+            LazyConfiguration target = (LazyConfiguration) ((Advised) lazyConfiguration).getTargetSource().getTarget();
+            AutowireCapableBeanFactory beanFactory = context.getAutowireCapableBeanFactory();
+            beanFactory.destroyBean(target);
+            beanFactory.initializeBean(target, context.getBeanNamesForType(LazyConfiguration.class)[0]);
+            Assertions.assertThat(target.getPassword()).isEqualTo(ENCRYPTED_PASSWORD);
+            Assertions.assertThat(lazyConfiguration.getPassword()).isEqualTo(Constantes.MOT_DE_PASSE);
+        }
+    }
+
+    @Test
+    void globalLazyMode() {
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(EncryptedPropertyConfiguration.class, DomainConfiguration.class, LdapProperties.class)
+                .web(WebApplicationType.NONE)
+                .profiles("dev")
+                .properties("encrypted-property.lazy=true")
+                .run()) {
+
+            // the configuration classes are left out of the global switch
+            DomainConfiguration domainConfiguration = context.getBean(DomainConfiguration.class);
+            Assertions.assertThat(AopUtils.isAopProxy(domainConfiguration)).isFalse();
+            Assertions.assertThat(domainConfiguration.getPassword()).isEqualTo(Constantes.MOT_DE_PASSE);
+
+            LdapProperties ldapProperties = context.getBean(LdapProperties.class);
+            Assertions.assertThat(AopUtils.isCglibProxy(ldapProperties)).isTrue();
+            Assertions.assertThat(ldapProperties.getPassword()).isEqualTo("secret");
+        }
+    }
+
+    @Test
+    void classWithFinalMethodIsDecryptedAtOnce() {
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(EncryptedPropertyConfiguration.class, FinalMethodProperties.class)
+                .web(WebApplicationType.NONE)
+                .properties("final.password=" + ENCRYPTED_PASSWORD)
+                .run()) {
+
+            FinalMethodProperties properties = context.getBean(FinalMethodProperties.class);
+            Assertions.assertThat(AopUtils.isAopProxy(properties)).isFalse();
+            Assertions.assertThat(properties.describe()).isEqualTo("password: " + Constantes.MOT_DE_PASSE);
+        }
+    }
+
+    @ConfigurationProperties("lazy")
+    @Configuration(proxyBeanMethods = false)
+    @EnableConfigurationProperties
+    public static class LazyConfiguration {
+        private String password;
+        private String token;
+
+        public String getPassword() {
+            return password;
+        }
+
+        @EncryptedProperty(algo = Constantes.ALGO_CRYPTO, key = Constantes.CRYPTO_KEY, lazy = true)
+        public void setPassword(String password) {
+            this.password = password;
+        }
+
+        public String getToken() {
+            return token;
+        }
+
+        @EncryptedProperty(algo = Constantes.ALGO_CRYPTO, key = Constantes.CRYPTO_KEY)
+        public void setToken(String token) {
+            this.token = token;
+        }
+    }
+
+    @ConfigurationProperties("final")
+    @EnableConfigurationProperties
+    public static class FinalMethodProperties {
+        private String password;
+
+        public String getPassword() {
+            return password;
+        }
+
+        @EncryptedProperty(algo = Constantes.ALGO_CRYPTO, key = Constantes.CRYPTO_KEY, lazy = true)
+        public void setPassword(String password) {
+            this.password = password;
+        }
+
+        public final String describe() {
+            return "password: " + password; // would read the null field of a proxy
+        }
+    }
+}
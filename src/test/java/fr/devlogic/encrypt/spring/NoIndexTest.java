@@ -0,0 +1,53 @@
+package fr.devlogic.encrypt.spring;
+
+import fr.devlogic.encrypt.spring.impl.EncryptedPropertyConfiguration;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.autoconfigure.ldap.LdapProperties;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.net.URL;
+import java.util.Collections;
+import java.util.Enumeration;
+
+/**
+ * The test classes are compiled with the index processor: the index is hidden to run the agent and the ASM scan.
+ */
+class NoIndexTest {
+
+    private static final String INDEX_LOCATION = "META-INF/encrypted-property.index";
+
+    @Test
+    void propertiesAreDecryptedWithoutIndex() {
+        Thread thread = Thread.currentThread();
+        ClassLoader classLoader = thread.getContextClassLoader();
+        thread.setContextClassLoader(new ClassLoader(classLoader) {
+            @Override
+            public URL getResource(String name) {
+                return INDEX_LOCATION.equals(name) ? null : super.getResource(name);
+            }
+
+            @Override
+            public Enumeration<URL> getResources(String name) throws IOException {
+                return INDEX_LOCATION.equals(name) ? Collections.emptyEnumeration() : super.getResources(name);
+            }
+        });
+
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(EncryptedPropertyConfiguration.class, DomainConfiguration.class, LdapProperties.class)
+                .web(WebApplicationType.NONE)
+                .profiles("dev")
+                .run()) {
+
+            DomainConfiguration domainConfiguration = context.getBean(DomainConfiguration.class);
+            Assertions.assertThat(domainConfiguration.getPassword()).isEqualTo(Constantes.MOT_DE_PASSE);
+            Assertions.assertThat(domainConfiguration.getPassword2()).isEqualTo(Constantes.MOT_DE_PASSE);
+            Assertions.assertThat(domainConfiguration.getUnencryptedPassword()).isEqualTo("123456");
+            Assertions.assertThat(context.getBean(LdapProperties.class).getPassword()).isEqualTo("secret");
+        } finally {
+            thread.setContextClassLoader(classLoader);
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package fr.devlogic.encrypt.spring;
+
+import fr.devlogic.encrypt.spring.impl.DecryptionStartupReport;
+import fr.devlogic.encrypt.spring.impl.EncryptedPropertyConfiguration;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.autoconfigure.ldap.LdapProperties;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.context.metrics.buffering.BufferingApplicationStartup;
+import org.springframework.boot.context.metrics.buffering.StartupTimeline;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.core.metrics.StartupStep;
+
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.StreamSupport;
+
+class StartupReportTest {
+
+    @Test
+    void decryptionsAreStartupSteps() {
+        BufferingApplicationStartup applicationStartup = new BufferingApplicationStartup(10_000);
+
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(EncryptedPropertyConfiguration.class, DomainConfiguration.class, LdapProperties.class)
+                .web(WebApplicationType.NONE)
+                .profiles("dev")
+                .properties("encrypted-property.startup-report.enabled=true")
+                .applicationStartup(applicationStartup)
+                .run()) {
+
+            List<StartupStep> decryptions = applicationStartup.getBufferedTimeline().getEvents().stream()
+                    .map(StartupTimeline.TimelineEvent::getStartupStep)
+                    .filter(step -> step.getName().equals("encrypted-property.decrypt"))
+                    .collect(Collectors.toList());
+            List<String> beanNames = decryptions.stream()
+                    .flatMap(step -> StreamSupport.stream(step.getTags().spliterator(), false))
+                    .filter(tag -> tag.getKey().equals("beanName"))
+                    .map(StartupStep.Tag::getValue)
+                    .collect(Collectors.toList());
+            Assertions.assertThat(beanNames).contains("domainConfiguration");
+
+            Assertions.assertThat(applicationStartup.getBufferedTimeline().getEvents())
+                    .anyMatch(event -> event.getStartupStep().getName().equals("encrypted-property.scan"));
+
+            String summary = context.getBean(DecryptionStartupReport.class).summary();
+            Assertions.assertThat(summary).startsWith("Encrypted properties: ").contains("domainConfiguration (" + DomainConfiguration.class.getName() + ")");
+        }
+    }
+}
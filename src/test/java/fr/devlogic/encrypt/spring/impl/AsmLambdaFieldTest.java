@@ -0,0 +1,29 @@
+package fr.devlogic.encrypt.spring.impl;
+
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Method;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+class AsmLambdaFieldTest {
+
+    @Test
+    void lambdaFieldsAreScannedOnce() throws NoSuchMethodException {
+        Map<String, List<Method>> fieldLambdas = AsmLambdaField.retrieveLambdaStaticFields(LambdaFields.class);
+
+        Assertions.assertThat(fieldLambdas).containsOnlyKeys("SET_NAME");
+        Assertions.assertThat(fieldLambdas.get("SET_NAME")).containsExactly(Thread.class.getMethod("setName", String.class));
+        Assertions.assertThat(AsmLambdaField.retrieveLambdaStaticFields(LambdaFields.class)).isSameAs(fieldLambdas);
+    }
+
+    @SuppressWarnings("unused")
+    static class LambdaFields {
+        private static final BiConsumer<Thread, String> SET_NAME = Thread::setName;
+        private static final Function<String, Integer> LENGTH = String::length;
+        private static final String NAME = "lambda-fields";
+    }
+}
@@ -0,0 +1,24 @@
+package fr.devlogic.encrypt.spring.impl;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class DecryptionStatisticsTest {
+
+    @Test
+    void closedMetricsAreNoLongerNotified() {
+        DecryptionStatistics statistics = new DecryptionStatistics();
+        MeterRegistry registry = new SimpleMeterRegistry();
+        DecryptionMetrics metrics = new DecryptionMetrics(statistics);
+        metrics.bindTo(registry);
+
+        statistics.recordDecryption("AES", 10, true);
+        Assertions.assertThat(registry.find("encrypted.property.decryption").tag("algo", "AES").functionTimer()).isNotNull();
+
+        metrics.close();
+        statistics.recordDecryption("Blowfish", 10, true);
+        Assertions.assertThat(registry.find("encrypted.property.decryption").tag("algo", "Blowfish").functionTimer()).isNull();
+    }
+}
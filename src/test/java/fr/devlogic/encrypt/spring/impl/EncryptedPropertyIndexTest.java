@@ -0,0 +1,77 @@
+package fr.devlogic.encrypt.spring.impl;
+
+import fr.devlogic.encrypt.spring.DomainConfiguration;
+import fr.devlogic.encrypt.spring.EncryptedProperty;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.autoconfigure.ldap.LdapProperties;
+import org.springframework.util.StreamUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+class EncryptedPropertyIndexTest {
+
+    @Test
+    void lambdaFieldsAreIndexed() throws NoSuchMethodException {
+        EncryptedPropertyIndex index = EncryptedPropertyIndex.load(getClass().getClassLoader());
+        Assertions.assertThat(index).isNotNull();
+
+        Map<String, List<Method>> fieldLambdas = index.resolveLambdaFields(DomainConfiguration.class);
+        Assertions.assertThat(fieldLambdas).containsOnlyKeys("LDAPPROPERTIES_SETPASSWORD");
+        Assertions.assertThat(fieldLambdas.get("LDAPPROPERTIES_SETPASSWORD")).containsExactly(LdapProperties.class.getMethod("setPassword", String.class));
+
+        Assertions.assertThat(index.resolveLambdaFields(LdapProperties.class)).isNull();
+    }
+
+    @Test
+    void nativeImageMetadataIsWritten() throws IOException {
+        Assertions.assertThat(read(EncryptedPropertyIndexProcessor.REFLECT_CONFIG_LOCATION))
+                .contains("{\"name\": \"" + DomainConfiguration.class.getName() + "\", \"allDeclaredFields\": true, \"allPublicMethods\": true}")
+                .contains("{\"name\": \"" + LdapProperties.class.getName() + "\", \"allDeclaredFields\": true, \"allPublicMethods\": true}");
+        Assertions.assertThat(read(EncryptedPropertyIndexProcessor.RESOURCE_CONFIG_LOCATION))
+                .contains("{\"pattern\": \"\\\\Q" + EncryptedPropertyIndex.INDEX_LOCATION + "\\\\E\"}");
+    }
+
+    @Test
+    void referenceToAnotherClassIsNotIndexed() {
+        EncryptedPropertyIndex index = EncryptedPropertyIndex.load(getClass().getClassLoader());
+        Assertions.assertThat(index).isNotNull();
+
+        Assertions.assertThat(index.getClasses(EncryptedPropertyIndex.FIELD)).contains(ForeignReference.class.getName());
+        Assertions.assertThat(index.resolveLambdaFields(ForeignReference.class)).isNull();
+    }
+
+    @Test
+    void classesOfJarsWithoutIndexAreNotCovered() {
+        ClassLoader classLoader = getClass().getClassLoader();
+        EncryptedPropertyIndex index = EncryptedPropertyIndex.load(classLoader);
+        Assertions.assertThat(index).isNotNull();
+
+        Assertions.assertThat(index.covers(DomainConfiguration.class.getName(), classLoader)).isTrue();
+        Assertions.assertThat(index.covers(LdapProperties.class.getName(), classLoader)).isFalse();
+    }
+
+    private String read(String location) throws IOException {
+        URL url = getClass().getClassLoader().getResource(location);
+        Assertions.assertThat(url).as(location).isNotNull();
+        try (InputStream is = url.openStream()) {
+            return StreamUtils.copyToString(is, StandardCharsets.UTF_8);
+        }
+    }
+
+    static class ForeignReference {
+        @EncryptedProperty(algo = "AES", key = "key")
+        static final BiConsumer<LdapProperties, String> LDAPPROPERTIES_APPLY = ForeignReference::apply;
+
+        static void apply(LdapProperties ldapProperties, String password) {
+            ldapProperties.setPassword(password);
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package fr.devlogic.encrypt.spring.impl;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.function.BiConsumer;
+
+class FlightRecorderEventsTest {
+
+    @SuppressWarnings("unused")
+    private static final BiConsumer<StringBuilder, String> APPEND = StringBuilder::append;
+
+    @Test
+    void eventsAreRecorded(@TempDir Path directory) throws IOException {
+        List<RecordedEvent> events;
+        try (Recording recording = new Recording()) {
+            recording.enable("fr.devlogic.encrypt.Decryption");
+            recording.enable("fr.devlogic.encrypt.LambdaScan");
+            recording.start();
+
+            FlightRecorderEvents.get().decryption(String.class, "AES").commit(0);
+            AsmLambdaField.scan(FlightRecorderEventsTest.class);
+
+            recording.stop();
+            Path file = directory.resolve("events.jfr");
+            recording.dump(file);
+            events = RecordingFile.readAllEvents(file);
+        }
+
+        RecordedEvent decryption = events.stream().filter(e -> e.getEventType().getName().equals("fr.devlogic.encrypt.Decryption"))
+                .findFirst().orElseThrow(AssertionError::new);
+        Assertions.assertThat(decryption.getClass("beanClass").getName()).isEqualTo(String.class.getName());
+        Assertions.assertThat(decryption.getString("algo")).isEqualTo("AES");
+
+        RecordedEvent lambdaScan = events.stream().filter(e -> e.getEventType().getName().equals("fr.devlogic.encrypt.LambdaScan"))
+                .findFirst().orElseThrow(AssertionError::new);
+        Assertions.assertThat(lambdaScan.getClass("configurationClass").getName()).isEqualTo(FlightRecorderEventsTest.class.getName());
+    }
+}
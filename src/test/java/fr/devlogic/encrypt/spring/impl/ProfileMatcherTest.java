@@ -0,0 +1,47 @@
+package fr.devlogic.encrypt.spring.impl;
+
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.env.MockEnvironment;
+
+class ProfileMatcherTest {
+
+    @Test
+    void profileList() {
+        MockEnvironment environment = new MockEnvironment();
+        environment.setActiveProfiles("prod");
+        ProfileMatcher profileMatcher = new ProfileMatcher(environment);
+
+        Assertions.assertThat(profileMatcher.matches("")).isTrue();
+        Assertions.assertThat(profileMatcher.matches("prod, pre-prod, !test")).isTrue();
+        Assertions.assertThat(profileMatcher.matches("dev")).isFalse();
+        Assertions.assertThat(profileMatcher.matches("!test")).isFalse();
+        Assertions.assertThat(profileMatcher.matches("*")).isTrue();
+        Assertions.assertThat(profileMatcher.matches("*, !prod")).isFalse();
+        Assertions.assertThat(profileMatcher.matches("!*")).isFalse();
+    }
+
+    @Test
+    void profileExpression() {
+        MockEnvironment environment = new MockEnvironment();
+        environment.setActiveProfiles("prod", "eu");
+        ProfileMatcher profileMatcher = new ProfileMatcher(environment);
+
+        Assertions.assertThat(profileMatcher.matches("(prod | pre-prod) & !test")).isTrue();
+        Assertions.assertThat(profileMatcher.matches("prod & us")).isFalse();
+        Assertions.assertThat(profileMatcher.matches("prod & (us | eu)")).isTrue();
+        Assertions.assertThat(profileMatcher.matches("(!prod)")).isFalse();
+    }
+
+    @Test
+    void activeProfilesChange() {
+        MockEnvironment environment = new MockEnvironment();
+        environment.setActiveProfiles("dev");
+        ProfileMatcher profileMatcher = new ProfileMatcher(environment);
+
+        Assertions.assertThat(profileMatcher.matches("dev")).isTrue();
+
+        environment.setActiveProfiles("prod");
+        Assertions.assertThat(profileMatcher.matches("dev")).isFalse();
+    }
+}
@@ -0,0 +1,74 @@
+package fr.devlogic.encrypt.util;
+
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import javax.crypto.ShortBufferException;
+import javax.crypto.spec.SecretKeySpec;
+
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
+import java.security.InvalidKeyException;
+import java.util.Arrays;
+
+class CallerBufferDecryptionTest {
+
+    @Test
+    void decryptIntoCallerBuffers() throws GeneralSecurityException {
+        SecretKeySpec key = new SecretKeySpec(Encrypt.genKey(256), "AES");
+        String str = "Lqfdggliuhg ;lb827 token";
+        String encrypt = Encrypt.encrypt(str, "AES", key);
+        byte[] expected = str.getBytes();
+
+        byte[] bytes = new byte[64];
+        int length = Encrypt.decrypt(new StringBuilder(encrypt), bytes, 8, "AES", key);
+        Assertions.assertThat(Arrays.copyOfRange(bytes, 8, 8 + length)).isEqualTo(expected);
+
+        ByteBuffer buffer = ByteBuffer.allocateDirect(64);
+        Assertions.assertThat(Encrypt.decrypt(encrypt, buffer, "AES", key)).isEqualTo(expected.length);
+        buffer.flip();
+        byte[] read = new byte[buffer.remaining()];
+        buffer.get(read);
+        Assertions.assertThat(read).isEqualTo(expected);
+
+        char[] chars = new char[64];
+        Assertions.assertThat(new String(chars, 0, Encrypt.decrypt(encrypt, chars, "AES", key))).isEqualTo(str);
+        Assertions.assertThat(Encrypt.decryptChars(encrypt, "AES", key)).isEqualTo(str.toCharArray());
+
+        Assertions.assertThatThrownBy(() -> Encrypt.decrypt(encrypt, new char[4], "AES", key)).isInstanceOf(ShortBufferException.class);
+        Assertions.assertThatThrownBy(() -> Encrypt.decrypt(encrypt, ByteBuffer.allocate(4), "AES", key)).isInstanceOf(ShortBufferException.class);
+        Assertions.assertThatThrownBy(() -> Encrypt.decryptChars("a#b=", "AES", key)).isInstanceOf(IllegalArgumentException.class);
+
+        String unpadded = Encrypt.encrypt("0123456789abcdef0", "AES", key).replace("=", "");
+        Assertions.assertThat(Encrypt.decryptChars(unpadded, "AES", key)).isEqualTo("0123456789abcdef0".toCharArray());
+
+        // several blocks, decrypted by update then the last block by doFinal
+        StringBuilder longValue = new StringBuilder();
+        for (int i = 0; i < 100; i++) {
+            longValue.append("block ").append(i).append(';');
+        }
+        String longEncrypt = Encrypt.encrypt(longValue.toString(), "AES", key);
+        byte[] longBytes = new byte[1024];
+        length = Encrypt.decrypt(longEncrypt, longBytes, 0, "AES", key);
+        Assertions.assertThat(new String(longBytes, 0, length)).isEqualTo(longValue.toString());
+        byte[] shortBytes = new byte[64];
+        Assertions.assertThatThrownBy(() -> Encrypt.decrypt(longEncrypt, shortBytes, 0, "AES", key)).isInstanceOf(ShortBufferException.class);
+        Assertions.assertThat(shortBytes).containsOnly(0);
+
+        // the pooled cipher was initialized again, the data buffered before the failure is dropped
+        for (int i = 0; i < 4; i++) {
+            length = Encrypt.decrypt(encrypt, bytes, 0, "AES", key);
+            Assertions.assertThat(Arrays.copyOf(bytes, length)).isEqualTo(expected);
+        }
+    }
+
+    @Test
+    void gcmIsNotSupported() throws GeneralSecurityException {
+        SecretKeySpec key = new SecretKeySpec(Encrypt.genKey(256), "AES");
+        String encrypt = Encrypt.encrypt("token", "AES", key);
+
+        byte[] bytes = new byte[64];
+        Assertions.assertThatThrownBy(() -> Encrypt.decrypt(encrypt, bytes, 0, "AES/GCM/NoPadding", key)).isInstanceOf(InvalidKeyException.class);
+        Assertions.assertThat(bytes).containsOnly(0);
+    }
+}
@@ -0,0 +1,32 @@
+package fr.devlogic.encrypt.util;
+
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.security.GeneralSecurityException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+
+class CipherPoolTest {
+
+    @Test
+    void encryptDecryptConcurrently() {
+        String base64Key = Base64.getEncoder().encodeToString(Encrypt.genKey(128));
+
+        List<String> values = new ArrayList<>();
+        for (int i = 0; i < 1_000; i++) {
+            values.add("value-" + i);
+        }
+
+        values.parallelStream().forEach(value -> {
+            try {
+                String encrypt = Encrypt.encrypt(value, "AES", base64Key);
+                Assertions.assertThat(Encrypt.encrypt(value, "AES", base64Key)).isEqualTo(encrypt);
+                Assertions.assertThat(Encrypt.decrypt(encrypt, "AES", base64Key)).isEqualTo(value);
+            } catch (GeneralSecurityException ex) {
+                throw new IllegalStateException(ex);
+            }
+        });
+    }
+}
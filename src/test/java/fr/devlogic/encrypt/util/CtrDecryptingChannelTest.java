@@ -0,0 +1,45 @@
+package fr.devlogic.encrypt.util;
+
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.NonWritableChannelException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.GeneralSecurityException;
+import java.util.Arrays;
+import java.util.Random;
+
+class CtrDecryptingChannelTest {
+
+    @Test
+    void randomAccess(@TempDir Path directory) throws GeneralSecurityException, IOException {
+        byte[] key = Encrypt.genKey(256);
+        byte[] data = new byte[100_003];
+        new Random().nextBytes(data);
+
+        Path plain = Files.write(directory.resolve("plain"), data);
+        Path encrypted = directory.resolve("plain.ctr");
+        Assertions.assertThat(CtrDecryptingChannel.encrypt(plain, encrypted, key)).isEqualTo(data.length + 16);
+
+        try (CtrDecryptingChannel channel = CtrDecryptingChannel.open(encrypted, key)) {
+            Assertions.assertThat(channel.size()).isEqualTo(data.length);
+
+            Random random = new Random();
+            for (int i = 0; i < 100; i++) {
+                int position = random.nextInt(data.length);
+                ByteBuffer buffer = ByteBuffer.allocate(random.nextInt(20_000) + 1);
+                int length = channel.position(position).read(buffer);
+                Assertions.assertThat(length).isEqualTo(Math.min(buffer.capacity(), data.length - position));
+                Assertions.assertThat(Arrays.copyOf(buffer.array(), length)).isEqualTo(Arrays.copyOfRange(data, position, position + length));
+                Assertions.assertThat(channel.position()).isEqualTo(position + length);
+            }
+
+            Assertions.assertThat(channel.position(data.length).read(ByteBuffer.allocate(1))).isEqualTo(-1);
+            Assertions.assertThatThrownBy(() -> channel.write(ByteBuffer.allocate(1))).isInstanceOf(NonWritableChannelException.class);
+        }
+    }
+}
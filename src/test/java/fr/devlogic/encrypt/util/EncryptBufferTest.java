@@ -0,0 +1,61 @@
+package fr.devlogic.encrypt.util;
+
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.crypto.Cipher;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.GeneralSecurityException;
+import java.util.Base64;
+import java.util.Random;
+
+class EncryptBufferTest {
+
+    @Test
+    void directBuffers() throws GeneralSecurityException {
+        String base64Key = Base64.getEncoder().encodeToString(Encrypt.genKey(256));
+        byte[] data = new byte[10_000];
+        new Random().nextBytes(data);
+
+        ByteBuffer input = ByteBuffer.allocateDirect(data.length);
+        input.put(data).flip();
+        ByteBuffer encrypted = ByteBuffer.allocateDirect(data.length + 16);
+        Encrypt.encrypt(input, encrypted, "AES", base64Key);
+        encrypted.flip();
+
+        ByteBuffer decrypted = ByteBuffer.allocateDirect(encrypted.remaining());
+        int length = Encrypt.decrypt(encrypted, decrypted, "AES", base64Key);
+        decrypted.flip();
+
+        byte[] result = new byte[length];
+        decrypted.get(result);
+        Assertions.assertThat(result).isEqualTo(data);
+    }
+
+    @Test
+    void mappedFiles(@TempDir Path directory) throws GeneralSecurityException, IOException {
+        String base64Key = Base64.getEncoder().encodeToString(Encrypt.genKey(256));
+        byte[] data = new byte[1_000_003];
+        new Random().nextBytes(data);
+
+        Path plain = Files.write(directory.resolve("plain"), data);
+        Path encrypted = directory.resolve("plain.enc");
+        Path decrypted = directory.resolve("decrypted");
+
+        long encryptedSize = Encrypt.encrypt(plain, encrypted, "AES", base64Key);
+        Assertions.assertThat(Files.readAllBytes(encrypted)).hasSize((int) encryptedSize)
+                .isEqualTo(Encrypt.cipher(data, Cipher.ENCRYPT_MODE, "AES", base64Key));
+
+        Assertions.assertThat(Encrypt.decrypt(encrypted, decrypted, "AES", base64Key)).isEqualTo(data.length);
+        Assertions.assertThat(Files.readAllBytes(decrypted)).isEqualTo(data);
+
+        Path empty = Files.write(directory.resolve("empty"), new byte[0]);
+        Assertions.assertThat(Encrypt.encrypt(empty, encrypted, "AES", base64Key)).isEqualTo(16);
+        Assertions.assertThat(Encrypt.decrypt(encrypted, decrypted, "AES", base64Key)).isZero();
+    }
+}
@@ -0,0 +1,78 @@
+package fr.devlogic.encrypt.util;
+
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.GeneralSecurityException;
+import java.util.Arrays;
+import java.util.Random;
+
+class EncryptCommandLineTest {
+
+    private static final String ALGO = "AES";
+    private static final String KEY = "4QJ9YpTDKkrEEaJcbhn6DU6SgaSW+cNWC66CW6unmPc=";
+
+    private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    private final ByteArrayOutputStream err = new ByteArrayOutputStream();
+
+    @Test
+    void values() throws GeneralSecurityException, IOException {
+        Assertions.assertThat(run("", "-crypt", ALGO, KEY, "KbpvdP5vEzpb8")).isZero();
+        Assertions.assertThat(out.toString().trim()).isEqualTo("KbpvdP5vEzpb8 -> \"cXRmmH67QY9DxbHrlSrDhw==\"");
+
+        out.reset();
+        Assertions.assertThat(run("", "-decrypt", ALGO, KEY, "cXRmmH67QY9DxbHrlSrDhw==", "daami+dYrI4abo8SjqR57w==")).isZero();
+        Assertions.assertThat(out.toString().split("\\R"))
+                .containsExactly("cXRmmH67QY9DxbHrlSrDhw== -> \"KbpvdP5vEzpb8\"", "daami+dYrI4abo8SjqR57w== -> \"secret\"");
+    }
+
+    @Test
+    void stream() throws GeneralSecurityException, IOException {
+        String input = String.join("\n", "cXRmmH67QY9DxbHrlSrDhw==", "not encrypted", "daami+dYrI4abo8SjqR57w==");
+
+        Assertions.assertThat(run(input, "-decrypt-stream", ALGO, KEY)).isEqualTo(1);
+        Assertions.assertThat(out.toString().split("\\R", -1)).containsExactly("KbpvdP5vEzpb8", "", "secret", "");
+        Assertions.assertThat(err.toString()).startsWith("line 2: ");
+    }
+
+    @Test
+    void file(@TempDir Path directory) throws GeneralSecurityException, IOException {
+        Path values = Files.write(directory.resolve("values"), Arrays.asList("KbpvdP5vEzpb8", "secret"));
+
+        Assertions.assertThat(run("", "-crypt-file", ALGO, KEY, values.toString())).isZero();
+        Assertions.assertThat(out.toString().split("\\R")).containsExactly("cXRmmH67QY9DxbHrlSrDhw==", "daami+dYrI4abo8SjqR57w==");
+    }
+
+    @Test
+    void directory(@TempDir Path directory) throws GeneralSecurityException, IOException {
+        Path source = Files.createDirectories(directory.resolve("source/sub"));
+        byte[] data = new byte[100_000];
+        new Random().nextBytes(data);
+        Files.write(source.resolve("data.bin"), data);
+        Files.write(source.resolveSibling("values.txt"), Arrays.asList("KbpvdP5vEzpb8", "secret"));
+
+        Assertions.assertThat(run("", "-crypt-dir", ALGO, KEY, directory.resolve("source").toString(), "-threads", "2")).isZero();
+        long bytes = data.length + Files.size(source.resolveSibling("values.txt"));
+        Assertions.assertThat(out.toString()).startsWith("2 files, " + bytes + " bytes in ");
+        Assertions.assertThat(source.resolve("data.bin.enc")).exists();
+        Assertions.assertThat(source.resolveSibling("values.txt.enc")).exists();
+
+        Path mirror = directory.resolve("mirror");
+        Assertions.assertThat(run("", "-decrypt-dir", ALGO, KEY, directory.resolve("source").toString(), mirror.toString())).isZero();
+        Assertions.assertThat(Files.readAllBytes(mirror.resolve("sub/data.bin"))).isEqualTo(data);
+        Assertions.assertThat(mirror.resolve("values.txt")).hasSameTextualContentAs(source.resolveSibling("values.txt"));
+        Assertions.assertThat(mirror.resolve("sub/data.bin.enc")).doesNotExist();
+    }
+
+    private int run(String input, String... args) throws GeneralSecurityException, IOException {
+        EncryptCommandLine commandLine = new EncryptCommandLine(new ByteArrayInputStream(input.getBytes()), new PrintStream(out, true), new PrintStream(err, true));
+        return commandLine.run(args);
+    }
+}
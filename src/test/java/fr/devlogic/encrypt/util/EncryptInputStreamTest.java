@@ -0,0 +1,50 @@
+package fr.devlogic.encrypt.util;
+
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.SecretKeySpec;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.GeneralSecurityException;
+import java.util.Arrays;
+import java.util.Random;
+
+class EncryptInputStreamTest {
+
+    @Test
+    void bulkRead() throws GeneralSecurityException, IOException {
+        byte[] key = Encrypt.genKey(256);
+        byte[] data = new byte[100_000];
+        new Random().nextBytes(data);
+
+        SecretKeySpec secretKeySpec = new SecretKeySpec(key, "AES");
+        Cipher cipher = Cipher.getInstance("AES");
+        cipher.init(Cipher.ENCRYPT_MODE, secretKeySpec);
+        byte[] encrypted = cipher.doFinal(data);
+
+        // the wrapped stream returns short reads
+        InputStream encryptedStream = new FilterInputStream(new ByteArrayInputStream(encrypted)) {
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                return super.read(b, off, Math.min(len, 7));
+            }
+        };
+
+        ByteArrayOutputStream decrypted = new ByteArrayOutputStream();
+        try (InputStream is = Encrypt.cipher(encryptedStream, Cipher.DECRYPT_MODE, "AES", key)) {
+            Assertions.assertThat(is.skip(10)).isEqualTo(10);
+            byte[] buffer = new byte[3_000];
+            for (int length = is.read(buffer); length >= 0; length = is.read(buffer)) {
+                decrypted.write(buffer, 0, length);
+            }
+        }
+
+        Assertions.assertThat(decrypted.toByteArray()).isEqualTo(Arrays.copyOfRange(data, 10, data.length));
+    }
+}
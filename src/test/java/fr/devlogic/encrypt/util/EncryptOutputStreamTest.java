@@ -0,0 +1,52 @@
+package fr.devlogic.encrypt.util;
+
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.SecretKeySpec;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.security.GeneralSecurityException;
+import java.util.Random;
+
+class EncryptOutputStreamTest {
+
+    @Test
+    void bulkWrite() throws GeneralSecurityException, IOException {
+        byte[] key = Encrypt.genKey(256);
+        byte[] data = new byte[100_000];
+        new Random().nextBytes(data);
+
+        ByteArrayOutputStream encrypted = new ByteArrayOutputStream();
+        boolean[] closed = new boolean[1];
+        OutputStream target = new FilterOutputStream(encrypted) {
+            @Override
+            public void close() throws IOException {
+                closed[0] = true;
+                super.close();
+            }
+        };
+
+        try (OutputStream os = Encrypt.cipher(target, Cipher.ENCRYPT_MODE, "AES", key)) {
+            os.write(data, 0, 5);
+            os.flush();
+            Assertions.assertThat(encrypted.size()).isZero(); // less than a block
+            os.write(data, 5, 20_000);
+            os.flush();
+            Assertions.assertThat(encrypted.size()).isEqualTo(20_000 / 16 * 16);
+            os.write(data[20_005]);
+            os.write(data, 20_006, data.length - 20_006);
+        }
+
+        Assertions.assertThat(closed[0]).isTrue();
+
+        SecretKeySpec secretKeySpec = new SecretKeySpec(key, "AES");
+        Cipher cipher = Cipher.getInstance("AES");
+        cipher.init(Cipher.DECRYPT_MODE, secretKeySpec);
+        Assertions.assertThat(cipher.doFinal(encrypted.toByteArray())).isEqualTo(data);
+    }
+}
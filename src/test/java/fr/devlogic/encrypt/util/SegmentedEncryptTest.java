@@ -0,0 +1,47 @@
+package fr.devlogic.encrypt.util;
+
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.crypto.AEADBadTagException;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.GeneralSecurityException;
+import java.util.Base64;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+class SegmentedEncryptTest {
+
+    @Test
+    void segmentedFiles(@TempDir Path directory) throws GeneralSecurityException, IOException {
+        byte[] key = Encrypt.genKey(256);
+        byte[] data = new byte[100_003];
+        new Random().nextBytes(data);
+
+        Path plain = Files.write(directory.resolve("plain"), data);
+        Path encrypted = directory.resolve("plain.enc");
+        Path decrypted = directory.resolve("decrypted");
+
+        long encryptedSize = SegmentedEncrypt.encrypt(plain, encrypted, key, 4096, ForkJoinPool.commonPool());
+        Assertions.assertThat(Files.size(encrypted)).isEqualTo(encryptedSize);
+
+        Assertions.assertThat(SegmentedEncrypt.decrypt(encrypted, decrypted, key, ForkJoinPool.commonPool())).isEqualTo(data.length);
+        Assertions.assertThat(Files.readAllBytes(decrypted)).isEqualTo(data);
+
+        byte[] altered = Files.readAllBytes(encrypted);
+        altered[altered.length - 100] ^= 1;
+        Files.write(encrypted, altered);
+        Assertions.assertThatThrownBy(() -> SegmentedEncrypt.decrypt(encrypted, decrypted, key, ForkJoinPool.commonPool()))
+                .isInstanceOf(AEADBadTagException.class);
+
+        Path empty = Files.write(directory.resolve("empty"), new byte[0]);
+        String base64Key = Base64.getEncoder().encodeToString(key);
+        SegmentedEncrypt.encrypt(empty, encrypted, base64Key);
+        Assertions.assertThat(SegmentedEncrypt.decrypt(encrypted, decrypted, base64Key)).isZero();
+        Assertions.assertThat(decrypted).isEmptyFile();
+    }
+}